@@ -0,0 +1,64 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Batch;
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jobs per second of trivial commands run through {@link Batch} against its parallelism
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final int JOBS = 64;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int parallelism;
+
+    private final ICmd template = new Cmd().interpreter("true");
+    private final List<Iterable<String>> arguments = new ArrayList<>(
+            Collections.nCopies(JOBS, Collections.emptyList()));
+    private Batch batch;
+
+    @Setup
+    public void setUp() {
+        batch = new Batch(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        batch.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOBS)
+    public int jobs() throws Exception {
+        int exitValues = 0;
+        for (Future<ProcessResult> result : batch.results(template, arguments)) {
+            exitValues += result.get().getExitValue();
+        }
+        return exitValues;
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.session.Batcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one tiny command out of 256 started at once, every command in its own process versus groups
+ * of {@code batch} commands sharing one shell
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class BatcherBenchmark {
+    private static final int COMMANDS = 256;
+    private final ICmd echo = new Cmd().interpreter("echo");
+
+    @Param({"16", "64"})
+    public int batch;
+
+    private Batcher batcher;
+
+    @Setup
+    public void setUp() {
+        batcher = new Batcher(new Cmd(), "echo", batch, 5, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        batcher.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public Object processPerCommand() throws Exception {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[COMMANDS];
+        for (int i = 0; i < COMMANDS; i++) {
+            results[i] = echo.command("Hello").async();
+        }
+        return CompletableFuture.allOf(results).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public Object batched() throws Exception {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[COMMANDS];
+        for (int i = 0; i < COMMANDS; i++) {
+            results[i] = batcher.submit("Hello");
+        }
+        return CompletableFuture.allOf(results).get();
+    }
+}
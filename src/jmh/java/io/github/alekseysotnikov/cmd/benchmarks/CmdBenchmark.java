@@ -0,0 +1,56 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.listeners.WorkDir;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a template and creating a command from it, without starting any process
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class CmdBenchmark {
+    private final WorkDir workDir = new WorkDir(System.getProperty("java.io.tmpdir"));
+    private ICmd template;
+
+    @Setup
+    public void setUp() {
+        template = template();
+    }
+
+    @Benchmark
+    public ICmd buildTemplate() {
+        return template();
+    }
+
+    @Benchmark
+    public Command createCommand() {
+        return template.command("-c", "true");
+    }
+
+    private ICmd template() {
+        return new Cmd()
+                .configuring(workDir)
+                .listening((Listening.BeforeStart) e -> { })
+                .listening((Listening.AfterStart) (p, e) -> { })
+                .listening((Listening.AfterFinish) (p, r) -> { })
+                .listening((Listening.AfterStop) p -> { })
+                .interpreter("sh");
+    }
+}
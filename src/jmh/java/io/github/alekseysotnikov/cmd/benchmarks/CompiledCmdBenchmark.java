@@ -0,0 +1,95 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessListenerAdapter;
+import io.github.alekseysotnikov.cmd.listeners.WorkDir;
+import org.cactoos.iterable.IterableOf;
+import org.cactoos.iterable.Joined;
+import org.cactoos.iterable.Mapped;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.exec.ProcessExecutor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of stamping out a command from a template with a few configuring hooks and listeners,
+ * resolved on every call versus compiled once. {@link #cactoosPerCommand()} keeps the resolution
+ * the template did before it compiled itself internally, as the reference
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class CompiledCmdBenchmark {
+    private ICmd template;
+    private ICmd compiled;
+    private Listening.BeforeStart[] configuring;
+    private Iterable<ProcessListenerAdapter> listeners;
+
+    @Setup
+    public void setUp() {
+        template = new Cmd()
+                .configuring(new WorkDir(System.getProperty("java.io.tmpdir")), e -> e.readOutput(true))
+                .listening((Listening.BeforeStart) e -> { })
+                .listening((Listening.AfterStart) (p, e) -> { })
+                .listening((Listening.AfterFinish) (p, r) -> { })
+                .listening((Listening.AfterStop) p -> { })
+                .interpreter("sh");
+        compiled = template.compiled();
+        configuring = new Listening.BeforeStart[]{
+                new WorkDir(System.getProperty("java.io.tmpdir")), e -> e.readOutput(true)};
+        listeners = new IterableOf<>();
+        listeners = new Joined<>(listeners, new Mapped<>(ProcessListenerAdapter::new,
+                new IterableOf<Listening.BeforeStart>(e -> { })));
+        listeners = new Joined<>(listeners, new Mapped<>(ProcessListenerAdapter::new,
+                new IterableOf<Listening.AfterStart>((p, e) -> { })));
+        listeners = new Joined<>(listeners, new Mapped<>(ProcessListenerAdapter::new,
+                new IterableOf<Listening.AfterFinish>((p, r) -> { })));
+        listeners = new Joined<>(listeners, new Mapped<>(ProcessListenerAdapter::new,
+                new IterableOf<Listening.AfterStop>(p -> { })));
+    }
+
+    /**
+     * Copy of the per command resolution of the template before it was compiled: the configuring split,
+     * listeners behind a chain of lazy cactoos decorators and the interpreter joined to the command
+     */
+    @Benchmark
+    public ProcessExecutor cactoosPerCommand() {
+        ProcessExecutor executor = new ProcessExecutor();
+        Map<Boolean, List<Listening.BeforeStart>> split = Arrays.stream(configuring).collect(
+                Collectors.groupingBy(c -> c instanceof Listening.AfterStop));
+        List<Listening.BeforeStart> configuringBefore = split.getOrDefault(false, Collections.emptyList());
+        List<Listening.BeforeStart> configuringAfter = split.getOrDefault(true, Collections.emptyList());
+        configuringBefore.forEach(c -> c.run(executor));
+        listeners.forEach(executor::addListener);
+        configuringAfter.forEach(c -> c.run(executor));
+        return executor.command(new Joined<>(new IterableOf<>("sh"), new IterableOf<>("-c", "true")));
+    }
+
+    @Benchmark
+    public Command resolvedPerCommand() {
+        return template.command("-c", "true");
+    }
+
+    @Benchmark
+    public Command compiledOnce() {
+        return compiled.command("-c", "true");
+    }
+}
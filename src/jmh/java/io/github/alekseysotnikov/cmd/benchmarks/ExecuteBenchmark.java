@@ -0,0 +1,66 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.listeners.Journal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of executing trivial commands, dominated by fork/exec and the zt-exec plumbing around it,
+ * also with every execution recorded by a {@link Journal}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+    private final ICmd cmd = new Cmd();
+    private final ICmd reading = new Cmd().configuring(e -> e.readOutput(true));
+    private Journal journal;
+    private ICmd journaled;
+
+    @Setup
+    public void setUp() throws Exception {
+        journal = new Journal(Files.createTempDirectory("journal").toFile());
+        journaled = new Cmd().configuring(journal);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Benchmark
+    public ProcessResult executeTrue() throws Exception {
+        return cmd.command("true").execute();
+    }
+
+    @Benchmark
+    public ProcessResult executeTrueJournaled() throws Exception {
+        return journaled.command("true").execute();
+    }
+
+    @Benchmark
+    public ProcessResult executeEcho() throws Exception {
+        return cmd.command("echo", "Hello").execute();
+    }
+
+    @Benchmark
+    public String executeEchoAndReadOutput() throws Exception {
+        return reading.command("echo", "Hello").execute().outputUTF8();
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Listeners;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessListenerAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zeroturnaround.exec.listener.CompositeProcessListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of delivering one lifecycle event to the listeners of a command, as zt-exec does it with an adapter
+ * per listener, and with the flat per-hook arrays of {@link Listeners} used by templates.
+ * Every listener reacts to {@code afterStop} only, all the other hooks are no-ops
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ListenerDispatchBenchmark {
+    @Param({"1", "10", "50"})
+    public int listeners;
+
+    private CompositeProcessListener composite;
+    private CompositeProcessListener flat;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        composite = new CompositeProcessListener();
+        Listeners hooks = new Listeners();
+        for (int i = 0; i < listeners; i++) {
+            composite.add(new ProcessListenerAdapter((Listening.AfterStop) this.blackhole::consume));
+            hooks = hooks.with((Listening.AfterStop) this.blackhole::consume);
+        }
+        flat = new CompositeProcessListener();
+        flat.add(hooks);
+    }
+
+    @Benchmark
+    public void afterStop() {
+        composite.afterStop(null);
+    }
+
+    @Benchmark
+    public void allEvents() {
+        composite.beforeStart(null);
+        composite.afterStart(null, null);
+        composite.afterFinish(null, null);
+        composite.afterStop(null);
+    }
+
+    @Benchmark
+    public void flatAfterStop() {
+        flat.afterStop(null);
+    }
+
+    @Benchmark
+    public void flatAllEvents() {
+        flat.beforeStart(null);
+        flat.afterStart(null, null);
+        flat.afterFinish(null, null);
+        flat.afterStop(null);
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.listeners.RedirectTo;
+import io.github.alekseysotnikov.cmd.listeners.RedirectToFile;
+import io.github.alekseysotnikov.cmd.listeners.Rotation;
+import io.github.alekseysotnikov.cmd.listeners.WorkDir;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redirecting a large output into a stream, into a file pumped through the JVM with a buffer, through mapped regions
+ * or into 16 MB rotated segments, and into a file redirected by the OS.
+ * MB/s is the score multiplied by {@code megabytes}, threads per process is {@code startedThreads} divided by the score
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RedirectBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Template {
+        @Param({"stream", "pumped", "mapped", "rotated", "native"})
+        public String mode;
+
+        @Param({"64"})
+        public int megabytes;
+
+        ICmd cmd;
+
+        @Setup
+        public void setUp() throws Exception {
+            File workDir = Files.createTempDirectory("redirect-benchmark").toFile();
+            RedirectToFile redirect = RedirectToFile.fromOutputStream("output");
+            Listening.BeforeStart configuring;
+            if ("stream".equals(mode)) {
+                configuring = new RedirectTo(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        // discard
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        // discard
+                    }
+                });
+            } else if ("mapped".equals(mode)) {
+                configuring = redirect.mapped();
+            } else if ("rotated".equals(mode)) {
+                configuring = redirect.rotating(Rotation.bySize(16 * 1024 * 1024).keeping(2));
+            } else if ("native".equals(mode)) {
+                configuring = redirect.natively();
+            } else {
+                configuring = redirect;
+            }
+            cmd = new Cmd().configuring(new WorkDir(workDir), configuring);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Threads {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        public long startedThreads;
+        private long before;
+
+        @Setup(Level.Invocation)
+        public void before() {
+            before = THREADS.getTotalStartedThreadCount();
+        }
+
+        void after() {
+            startedThreads += THREADS.getTotalStartedThreadCount() - before;
+        }
+    }
+
+    @Benchmark
+    public ProcessResult redirect(Template template, Threads threads) throws Exception {
+        ProcessResult result = template.cmd
+                .listening((Listening.AfterStop) process -> threads.after())
+                .command("head", "-c", template.megabytes + "M", "/dev/zero")
+                .execute();
+        return result;
+    }
+}
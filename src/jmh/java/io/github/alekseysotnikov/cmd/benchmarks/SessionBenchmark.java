@@ -0,0 +1,53 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.session.Session;
+import io.github.alekseysotnikov.cmd.session.Shell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a tiny shell snippet started through a fresh interpreter versus a warm {@link Session}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class SessionBenchmark {
+    private static final String SCRIPT = "s='Hello'; echo $s";
+    private final ICmd shell = new Cmd().configuring(e -> e.readOutput(true)).interpreter("sh");
+    private Session session;
+
+    @Setup
+    public void setUp() throws Exception {
+        session = new Session(new Cmd(), new Shell());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        session.close();
+    }
+
+    @Benchmark
+    public ProcessResult forkPerScript() throws Exception {
+        return shell.command("-c", SCRIPT).execute();
+    }
+
+    @Benchmark
+    public ProcessResult warmSession() throws Exception {
+        return session.run(SCRIPT);
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.session.Spawner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of starting {@code true} and waiting for it against the size of the live heap, started by the JVM
+ * versus by a resident {@link Spawner}. The JDK launch mechanism is chosen per run, e.g.
+ * {@code -jvmArgsAppend -Djdk.lang.Process.launchMechanism=FORK}, also VFORK up to JDK 22 and POSIX_SPAWN
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class SpawnBenchmark {
+    private static final int CHUNK = 256 * 1024;
+
+    @Param({"0", "512", "2048"})
+    public int heapMb;
+
+    private byte[][] heap;
+    private Spawner spawner;
+
+    @Setup
+    public void setUp() throws Exception {
+        heap = new byte[heapMb * 4][];
+        for (int i = 0; i < heap.length; i++) {
+            heap[i] = new byte[CHUNK];
+            for (int j = 0; j < CHUNK; j += 4096) {
+                heap[i][j] = 1;
+            }
+        }
+        spawner = new Spawner(new Cmd());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        spawner.close();
+    }
+
+    @Benchmark
+    public Object jvm() throws Exception {
+        return new Cmd().command("true").execute();
+    }
+
+    @Benchmark
+    public Object spawner() throws Exception {
+        return spawner.submit("true").get();
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.alekseysotnikov.cmd.benchmarks;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.pool.Lines;
+import io.github.alekseysotnikov.cmd.pool.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a trivial request answered by a freshly forked tool versus a warm {@link WorkerPool}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WorkerPoolBenchmark {
+    private final ICmd cmd = new Cmd().configuring(e -> e.readOutput(true));
+    private WorkerPool pool;
+
+    @Setup
+    public void setUp() throws Exception {
+        pool = new WorkerPool(new Cmd(), Collections.singletonList("cat"), new Lines(),
+                4, 10_000, 1, TimeUnit.MINUTES);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public ProcessResult forkPerRequest() throws Exception {
+        return cmd.command("echo", "hello").execute();
+    }
+
+    @Benchmark
+    public ProcessResult warmWorker() throws Exception {
+        return pool.command("hello").execute();
+    }
+}
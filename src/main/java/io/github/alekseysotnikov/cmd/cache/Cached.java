@@ -0,0 +1,300 @@
+package io.github.alekseysotnikov.cmd.cache;
+
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.Flow;
+import io.github.alekseysotnikov.cmd.core.FuturePublisher;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessBuilderOf;
+import org.apache.commons.io.output.NullOutputStream;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Command served from a {@link ResultCache} when it was already run with the same command line,
+ * work directory, environment variables and input files. Output files are restored on a hit, no process is started
+ */
+public final class Cached implements Command {
+    private final ResultCache cache;
+    private final ICmd cmd;
+    private final List<String> command;
+    private final List<String> environment;
+    private final List<File> inputs;
+    private final List<File> outputs;
+    private final File directory;
+
+    Cached(ResultCache cache, ICmd cmd, List<String> command) {
+        this(cache, cmd, command, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null);
+    }
+
+    private Cached(ResultCache cache, ICmd cmd, List<String> command,
+                   List<String> environment, List<File> inputs, List<File> outputs, File directory) {
+        this.cache = cache;
+        this.cmd = cmd;
+        this.command = command;
+        this.environment = environment;
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.directory = directory;
+    }
+
+    /**
+     * The command is started in this directory instead of the one the template configures, it is a part of the key.
+     * Without it the directory of the template is not known before the start, so it is not a part of the key
+     *
+     * @param dir work directory
+     * @return new cached command
+     */
+    public Cached directory(File dir) {
+        return new Cached(cache, cmd, command, environment, inputs, outputs, dir.getAbsoluteFile());
+    }
+
+    /**
+     * @param names environment variables the result depends on
+     * @return new cached command
+     */
+    public Cached environment(String... names) {
+        return new Cached(cache, cmd, command, joined(environment, names), inputs, outputs, directory);
+    }
+
+    /**
+     * @param files files the result depends on, their content is a part of the key,
+     *              relative ones are resolved against the work directory if it is set, otherwise against the one of the JVM
+     * @return new cached command
+     */
+    public Cached inputs(File... files) {
+        return new Cached(cache, cmd, command, environment, joined(inputs, files), outputs, directory);
+    }
+
+    /**
+     * @param files files written by the command, they are stored with the result and restored on a hit,
+     *              relative ones are resolved against the work directory if it is set, otherwise against the one of the JVM
+     * @return new cached command
+     */
+    public Cached outputs(File... files) {
+        return new Cached(cache, cmd, command, environment, inputs, joined(outputs, files), directory);
+    }
+
+    @Override
+    public CachedResult execute() throws IOException, TimeoutException, InterruptedException {
+        String key = key();
+        StoredResult entry = cache.get(key, outputs.size());
+        if (entry != null) {
+            return restored(entry);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        return stored(key, capturing(output, error).execute(), output, error);
+    }
+
+    @Override
+    public CachedResult executeNoTimeout() throws IOException, InterruptedException {
+        String key = key();
+        StoredResult entry = cache.get(key, outputs.size());
+        if (entry != null) {
+            return restored(entry);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        return stored(key, capturing(output, error).executeNoTimeout(), output, error);
+    }
+
+    /**
+     * There is no process to return on a hit, so the result is always the only thing to wait for
+     */
+    @Override
+    public StartedProcess start() throws IOException {
+        return new StartedProcess(null, async());
+    }
+
+    @Override
+    public CompletableFuture<ProcessResult> async() throws IOException {
+        String key = key();
+        StoredResult entry = cache.get(key, outputs.size());
+        if (entry != null) {
+            return CompletableFuture.completedFuture(restored(entry));
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        return capturing(output, error).async().thenApply(result -> {
+            try {
+                return stored(key, result, output, error);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * The whole output is one chunk
+     */
+    @Override
+    public Flow.Publisher<byte[]> chunks() {
+        return new FuturePublisher(this::async);
+    }
+
+    @Override
+    public Stream<String> lines() throws IOException {
+        return lines(false);
+    }
+
+    @Override
+    public Stream<String> lines(boolean fromErrorStream) throws IOException {
+        try {
+            CachedResult result = execute();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(
+                    fromErrorStream ? result.error() : result.output()), StandardCharsets.UTF_8)).lines();
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for " + command, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + command, e);
+        }
+    }
+
+    @Override
+    public List<String> commandLine() {
+        return cmd.commandLine(command);
+    }
+
+    /**
+     * SHA-256 of the command line with the interpreter, the work directory, the environment variables,
+     * the input files with their content and the output files. Nothing is configured to compute it,
+     * so hooks of the template do not run on a hit
+     */
+    private String key() throws IOException {
+        MessageDigest digest = sha256();
+        try (DataOutputStream key = new DataOutputStream(new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest))) {
+            List<String> line = commandLine();
+            key.writeInt(line.size());
+            for (String arg : line) {
+                text(key, arg);
+            }
+            key.writeBoolean(directory != null);
+            text(key, directory == null ? "" : directory.getPath());
+            key.writeInt(environment.size());
+            for (String name : environment) {
+                String value = System.getenv(name);
+                text(key, name);
+                key.writeBoolean(value != null);
+                text(key, value == null ? "" : value);
+            }
+            key.writeInt(inputs.size());
+            for (File input : inputs) {
+                File file = resolved(input);
+                text(key, file.getPath());
+                key.writeBoolean(file.isFile());
+                if (file.isFile()) {
+                    key.write(content(file));
+                }
+            }
+            key.writeInt(outputs.size());
+            for (File output : outputs) {
+                text(key, resolved(output).getPath());
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private Command capturing(OutputStream output, OutputStream error) {
+        return cmd.listening((Listening.BeforeStart) executor -> {
+            if (directory != null) {
+                executor.directory(directory);
+            }
+            executor.redirectOutputAlsoTo(output);
+            if (!new ProcessBuilderOf(executor).value().redirectErrorStream()) {
+                executor.redirectErrorAlsoTo(error);
+            }
+        }).command(command);
+    }
+
+    private CachedResult stored(String key, ProcessResult result, ByteArrayOutputStream output,
+                                ByteArrayOutputStream error) throws IOException {
+        List<byte[]> files = new ArrayList<>(outputs.size());
+        for (File declared : outputs) {
+            File file = resolved(declared);
+            files.add(file.isFile() ? Files.readAllBytes(file.toPath()) : null);
+        }
+        StoredResult entry = new StoredResult(result.getExitValue(), output.toByteArray(), error.toByteArray(), files);
+        cache.put(key, entry);
+        return new CachedResult(entry.exitCode(), entry.output(), entry.error(), false);
+    }
+
+    private CachedResult restored(StoredResult entry) throws IOException {
+        for (int i = 0; i < outputs.size(); i++) {
+            byte[] content = entry.files().get(i);
+            if (content != null) {
+                File file = resolved(outputs.get(i));
+                Files.createDirectories(file.getParentFile().toPath());
+                Files.write(file.toPath(), content);
+            }
+        }
+        return new CachedResult(entry.exitCode(), entry.output(), entry.error(), true);
+    }
+
+    private File resolved(File file) {
+        return file.isAbsolute() || directory == null ? file.getAbsoluteFile() : new File(directory, file.getPath());
+    }
+
+    /**
+     * Length-prefixed UTF-8, so the text is not limited to 64 KB as by {@link DataOutputStream#writeUTF}
+     */
+    private static void text(DataOutputStream key, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        key.writeInt(bytes.length);
+        key.write(bytes);
+    }
+
+    private static byte[] content(File file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    @SafeVarargs
+    private static <T> List<T> joined(List<T> list, T... items) {
+        List<T> joined = new ArrayList<>(list);
+        joined.addAll(Arrays.asList(items));
+        return Collections.unmodifiableList(joined);
+    }
+}
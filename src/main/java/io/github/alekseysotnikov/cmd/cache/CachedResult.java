@@ -0,0 +1,35 @@
+package io.github.alekseysotnikov.cmd.cache;
+
+import org.zeroturnaround.exec.ProcessOutput;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exit code, output and error output of a {@link Cached} command, either fresh or served from the cache
+ */
+public final class CachedResult extends ProcessResult {
+    private final byte[] error;
+    private final boolean hit;
+
+    public CachedResult(int exitCode, byte[] output, byte[] error, boolean hit) {
+        super(exitCode, new ProcessOutput(output));
+        this.error = error;
+        this.hit = hit;
+    }
+
+    public byte[] error() {
+        return error;
+    }
+
+    public String errorUTF8() {
+        return new String(error, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if no process was started for the result
+     */
+    public boolean hit() {
+        return hit;
+    }
+}
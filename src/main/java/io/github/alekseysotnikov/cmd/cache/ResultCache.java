@@ -0,0 +1,196 @@
+package io.github.alekseysotnikov.cmd.cache;
+
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed store of command results. Entries live in a directory, one subdirectory per key,
+ * and the least recently used ones are evicted once the directory exceeds its size. Small entries are also
+ * kept in memory. The recency survives restarts through the modification time of the subdirectories
+ */
+public final class ResultCache {
+    private static final String TEMPORARY = ".tmp-";
+    private final Path dir;
+    private final long maxBytes;
+    private final long memoryEntryBytes;
+    private final Map<String, StoredResult> memory;
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long diskBytes;
+
+    /**
+     * @param dir      directory of the entries, it is created if needed
+     * @param maxBytes max size of all entries on disk
+     */
+    public ResultCache(File dir, long maxBytes) {
+        this(dir, maxBytes, 1024, 64 * 1024);
+    }
+
+    /**
+     * @param dir              directory of the entries, it is created if needed
+     * @param maxBytes         max size of all entries on disk
+     * @param memoryEntries    max number of entries in memory
+     * @param memoryEntryBytes max size of an entry kept in memory
+     */
+    public ResultCache(File dir, long maxBytes, int memoryEntries, long memoryEntryBytes) {
+        this.dir = dir.toPath();
+        this.maxBytes = maxBytes;
+        this.memoryEntryBytes = memoryEntryBytes;
+        this.memory = new LinkedHashMap<String, StoredResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResult> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+        load();
+    }
+
+    /**
+     * Command served from the cache when its key is known
+     *
+     * @param cmd     template to run the command on a miss
+     * @param command
+     * @return cached command
+     */
+    public Cached command(ICmd cmd, String... command) {
+        return new Cached(this, cmd, Arrays.asList(command));
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return hits served by the memory without reading the disk
+     */
+    public long memoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return size of all entries on disk
+     */
+    public synchronized long diskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * @param key
+     * @param files number of declared output files
+     * @return cached entry or null
+     */
+    StoredResult get(String key, int files) {
+        StoredResult entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        synchronized (this) {
+            if (disk.get(key) == null) {
+                misses.increment();
+                return null;
+            }
+        }
+        if (entry != null) {
+            memoryHits.increment();
+        } else {
+            try {
+                entry = StoredResult.read(dir.resolve(key), files);
+            } catch (IOException | RuntimeException e) {
+                misses.increment();
+                return null;
+            }
+            remember(key, entry);
+        }
+        dir.resolve(key).toFile().setLastModified(System.currentTimeMillis());
+        hits.increment();
+        return entry;
+    }
+
+    void put(String key, StoredResult entry) throws IOException {
+        Path temporary = dir.resolve(key + TEMPORARY + UUID.randomUUID());
+        entry.write(temporary);
+        synchronized (this) {
+            if (disk.containsKey(key)) {
+                FileUtils.deleteDirectory(temporary.toFile());
+                return;
+            }
+            Files.move(temporary, dir.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            disk.put(key, entry.size());
+            diskBytes += entry.size();
+            evict();
+        }
+        remember(key, entry);
+    }
+
+    private void remember(String key, StoredResult entry) {
+        if (entry.size() <= memoryEntryBytes) {
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            diskBytes -= entry.getValue();
+            synchronized (memory) {
+                memory.remove(entry.getKey());
+            }
+            FileUtils.deleteDirectory(dir.resolve(entry.getKey()).toFile());
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Index the entries left by the previous runs from the least recently used one
+     */
+    private void load() {
+        try {
+            Files.createDirectories(dir);
+            File[] entries = dir.toFile().listFiles(File::isDirectory);
+            if (entries == null) {
+                return;
+            }
+            Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+            for (File entry : entries) {
+                if (entry.getName().contains(TEMPORARY)) {
+                    FileUtils.deleteDirectory(entry);
+                } else {
+                    long size = FileUtils.sizeOfDirectory(entry);
+                    disk.put(entry.getName(), size);
+                    diskBytes += size;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Result cache " + dir + " is not accessible", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.alekseysotnikov.cmd.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything a command left behind: exit code, output, error output and contents of its declared output files,
+ * null for the files it did not create
+ */
+final class StoredResult {
+    private static final String EXIT = "exit";
+    private static final String OUTPUT = "stdout";
+    private static final String ERROR = "stderr";
+    private static final String FILE = "file-";
+    private final int exitCode;
+    private final byte[] output;
+    private final byte[] error;
+    private final List<byte[]> files;
+
+    StoredResult(int exitCode, byte[] output, byte[] error, List<byte[]> files) {
+        this.exitCode = exitCode;
+        this.output = output;
+        this.error = error;
+        this.files = files;
+    }
+
+    int exitCode() {
+        return exitCode;
+    }
+
+    byte[] output() {
+        return output;
+    }
+
+    byte[] error() {
+        return error;
+    }
+
+    List<byte[]> files() {
+        return files;
+    }
+
+    long size() {
+        long size = String.valueOf(exitCode).length() + output.length + error.length;
+        for (byte[] file : files) {
+            size += file == null ? 0 : file.length;
+        }
+        return size;
+    }
+
+    /**
+     * @param dir      entry directory
+     * @param declared number of declared output files
+     */
+    static StoredResult read(Path dir, int declared) throws IOException {
+        List<byte[]> files = new ArrayList<>(declared);
+        for (int i = 0; i < declared; i++) {
+            Path file = dir.resolve(FILE + i);
+            files.add(Files.exists(file) ? Files.readAllBytes(file) : null);
+        }
+        return new StoredResult(
+                Integer.parseInt(new String(Files.readAllBytes(dir.resolve(EXIT)), StandardCharsets.UTF_8)),
+                Files.readAllBytes(dir.resolve(OUTPUT)),
+                Files.readAllBytes(dir.resolve(ERROR)),
+                files);
+    }
+
+    void write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Files.write(dir.resolve(EXIT), String.valueOf(exitCode).getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve(OUTPUT), output);
+        Files.write(dir.resolve(ERROR), error);
+        for (int i = 0; i < files.size(); i++) {
+            if (files.get(i) != null) {
+                Files.write(dir.resolve(FILE + i), files.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+final class BaseCommand implements Command {
+    private static final int LINES_CAPACITY = 1024;
+    private static final int CHUNK_SIZE = 8192;
+    private final CmdExecutor processExecutor;
+    private final Supplier<CmdExecutor> executors;
+
+    /**
+     * @param processExecutor executor of the command
+     * @param executors       new executors of the same command, configured the same way
+     */
+    BaseCommand(CmdExecutor processExecutor, Supplier<CmdExecutor> executors) {
+        this.processExecutor = processExecutor;
+        this.executors = executors;
+    }
+
+    /**
+     * See {@link ProcessExecutor#execute()}
+     */
+    @Override
+    public ProcessResult execute() throws IOException, TimeoutException, InterruptedException {
+        return processExecutor.execute();
+    }
+
+    /**
+     * See {@link ProcessExecutor#executeNoTimeout()}
+     */
+    @Override
+    public ProcessResult executeNoTimeout() throws IOException, InterruptedException {
+        return processExecutor.executeNoTimeout();
+    }
+
+    /**
+     * See {@link ProcessExecutor#start()}
+     */
+    @Override
+    public StartedProcess start() throws IOException {
+        return processExecutor.start();
+    }
+
+    /**
+     * Completed by the exit notification of the process, no thread waits for it on Java 9+.
+     * Every call starts on an executor of its own, so calls may overlap
+     */
+    @Override
+    public CompletableFuture<ProcessResult> async() throws IOException {
+        return executors.get().startAsync(process -> new ExitOf(process).future());
+    }
+
+    @Override
+    public Flow.Publisher<byte[]> chunks() {
+        return new ChunkPublisher(executors, CHUNK_SIZE);
+    }
+
+    @Override
+    public Stream<String> lines() throws IOException {
+        return lines(false);
+    }
+
+    /**
+     * Tees the chosen stream into a bounded queue. Every call starts on an executor of its own,
+     * which never buffers the output for the result, so memory stays bounded whatever the configuring asks for
+     */
+    @Override
+    public Stream<String> lines(boolean fromErrorStream) throws IOException {
+        LineStream lines = new LineStream(LINES_CAPACITY);
+        CmdExecutor executor = executors.get();
+        executor.readOutput(false);
+        if (fromErrorStream) {
+            executor.redirectErrorAlsoTo(lines);
+        } else {
+            executor.redirectOutputAlsoTo(lines);
+        }
+        StartedProcess started = executor
+                .addListener(new ProcessListenerAdapter((Listening.AfterStop) process -> lines.end()))
+                .start();
+        return lines.stream(() -> started.getFuture().cancel(true));
+    }
+
+    @Override
+    public List<String> commandLine() {
+        return processExecutor.getCommand();
+    }
+
+    ProcessExecutor executor() {
+        return processExecutor;
+    }
+}
@@ -0,0 +1,167 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.cactoos.iterable.Mapped;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes many commands with bounded parallelism. When all workers are busy and the queue is full,
+ * submitters block until a slot frees up, so a burst never forks more than {@code parallelism} processes at once
+ */
+public final class Batch implements AutoCloseable {
+    private final ExecutorService workers;
+    private final Semaphore slots;
+
+    public Batch(int parallelism) {
+        this(parallelism, parallelism);
+    }
+
+    public Batch(int parallelism, int queueDepth) {
+        if (parallelism < 1 || queueDepth < 0) {
+            throw new IllegalArgumentException(
+                    "Parallelism must be positive and queue depth non-negative, got " + parallelism + " and " + queueDepth);
+        }
+        this.workers = Executors.newFixedThreadPool(parallelism, new Workers());
+        this.slots = new Semaphore(parallelism + queueDepth);
+    }
+
+    /**
+     * Submit the command, blocking while the batch is saturated
+     *
+     * @param command
+     * @return result of {@link Command#execute()}
+     */
+    public Future<ProcessResult> submit(Command command) throws InterruptedException {
+        return submit(command, null);
+    }
+
+    /**
+     * Execute commands, submitting them lazily as the results are consumed
+     *
+     * @param commands
+     * @return finished commands in order of completion
+     */
+    public Iterable<Future<ProcessResult>> results(Iterable<Command> commands) {
+        return () -> new Results(commands.iterator());
+    }
+
+    /**
+     * Execute the command template against every argument list
+     *
+     * @param template
+     * @param arguments
+     * @return finished commands in order of completion
+     */
+    public Iterable<Future<ProcessResult>> results(ICmd template, Iterable<Iterable<String>> arguments) {
+        return results(new Mapped<Iterable<String>, Command>(template::command, arguments));
+    }
+
+    /**
+     * Stop accepting new commands and wait for the submitted ones
+     */
+    @Override
+    public void close() throws InterruptedException {
+        workers.shutdown();
+        while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+            // keep waiting for the running processes
+        }
+    }
+
+    private Future<ProcessResult> submit(Command command, BlockingQueue<Future<ProcessResult>> completed)
+            throws InterruptedException {
+        slots.acquire();
+        return enqueue(command, completed);
+    }
+
+    private Future<ProcessResult> enqueue(Command command, BlockingQueue<Future<ProcessResult>> completed) {
+        Job job = new Job(command, completed);
+        try {
+            workers.execute(job);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        return job;
+    }
+
+    private final class Job extends FutureTask<ProcessResult> {
+        private final BlockingQueue<Future<ProcessResult>> completed;
+
+        Job(Command command, BlockingQueue<Future<ProcessResult>> completed) {
+            super(command::execute);
+            this.completed = completed;
+        }
+
+        @Override
+        protected void done() {
+            slots.release();
+            if (completed != null) {
+                completed.add(this);
+            }
+        }
+    }
+
+    private final class Results implements Iterator<Future<ProcessResult>> {
+        private final Iterator<Command> commands;
+        private final BlockingQueue<Future<ProcessResult>> completed = new LinkedBlockingQueue<>();
+        private int running;
+
+        Results(Iterator<Command> commands) {
+            this.commands = commands;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return running > 0 || commands.hasNext();
+        }
+
+        @Override
+        public Future<ProcessResult> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                while (commands.hasNext() && (running == 0 || slots.tryAcquire())) {
+                    Command command = commands.next();
+                    if (running == 0) {
+                        submit(command, completed);
+                    } else {
+                        enqueue(command, completed);
+                    }
+                    running++;
+                }
+                Future<ProcessResult> result = completed.take();
+                running--;
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for batch results", e);
+            }
+        }
+    }
+
+    private static final class Workers implements ThreadFactory {
+        private static final AtomicInteger BATCHES = new AtomicInteger();
+        private final int batch = BATCHES.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "Batch-" + batch + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.stream.PumpStreamHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Output of a new process for every subscriber, read only as far as the subscriber requested.
+ * Until then the process blocks on a full pipe, which is the backpressure. No thread waits for the data,
+ * the pipe is polled by one timer shared by all publishers, and the chunks are delivered on the common pool.
+ * Every subscriber gets an executor of its own, so the command keeps its configuration for other executions
+ */
+final class ChunkPublisher implements Flow.Publisher<byte[]> {
+    private static final int MAX_PAUSE_MILLIS = 10;
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "ChunkPublisher-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Supplier<CmdExecutor> executors;
+    private final int chunkSize;
+
+    /**
+     * @param executors new executor of the command for every subscriber
+     * @param chunkSize
+     */
+    ChunkPublisher(Supplier<CmdExecutor> executors, int chunkSize) {
+        this.executors = executors;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super byte[]> subscriber) {
+        Chunks chunks = new Chunks(subscriber, chunkSize);
+        subscriber.onSubscribe(chunks);
+        try {
+            chunks.start(executors.get());
+        } catch (RuntimeException e) {
+            chunks.fail(e);
+        }
+    }
+
+    private static final class Chunks implements Flow.Subscription {
+        private final Flow.Subscriber<? super byte[]> subscriber;
+        private final byte[] buffer;
+        private final Executor runner = ForkJoinPool.commonPool();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private final AtomicBoolean terminated = new AtomicBoolean();
+        private final CompletableFuture<Void> end = new CompletableFuture<>();
+        private volatile Process process;
+        private volatile InputStream output;
+        private volatile boolean cancelled;
+        private int pause = 1;
+
+        Chunks(Flow.Subscriber<? super byte[]> subscriber, int chunkSize) {
+            this.subscriber = subscriber;
+            this.buffer = new byte[chunkSize];
+        }
+
+        /**
+         * Start the process with its output left unread in the pipe, zt-exec finishes the process
+         * after the output has been read to the end
+         */
+        void start(CmdExecutor executor) {
+            try {
+                PumpStreamHandler pumps = executor.pumps();
+                executor.readOutput(false).streams(new PumpStreamHandler(null, pumps.getErr(), pumps.getInput()));
+                CompletableFuture<ProcessResult> result = executor.startAsync(p -> {
+                    process = p;
+                    output = p.getInputStream();
+                    return end.thenCompose(ignored -> new ExitOf(p).future());
+                });
+                result.whenComplete((r, e) -> {
+                    if (e == null) {
+                        complete();
+                    } else {
+                        fail(e instanceof CompletionException || e instanceof ExecutionException ? e.getCause() : e);
+                    }
+                });
+                signal();
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                fail(new IllegalArgumentException("Requested " + n + " chunks, but it has to be positive"));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            signal();
+        }
+
+        /**
+         * Stop reading and destroy the process
+         */
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (process != null) {
+                process.destroy();
+            }
+            signal();
+        }
+
+        private void signal() {
+            if (work.getAndIncrement() == 0) {
+                runner.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                step();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Deliver what the pipe has and the subscriber wants, poll again later if the pipe is empty
+         */
+        private void step() {
+            if (output == null || end.isDone()) {
+                return;
+            }
+            try {
+                while (!cancelled && demand.get() > 0) {
+                    int available = output.available();
+                    int read;
+                    if (available > 0) {
+                        read = output.read(buffer, 0, Math.min(available, buffer.length));
+                    } else if (!process.isAlive()) {
+                        read = output.read(buffer);
+                    } else {
+                        TIMER.schedule(this::signal, pause, TimeUnit.MILLISECONDS);
+                        pause = Math.min(pause * 2, MAX_PAUSE_MILLIS);
+                        return;
+                    }
+                    if (read < 0) {
+                        end.complete(null);
+                        return;
+                    }
+                    pause = 1;
+                    demand.decrementAndGet();
+                    subscriber.onNext(Arrays.copyOf(buffer, read));
+                }
+                if (cancelled) {
+                    end.complete(null);
+                }
+            } catch (IOException | RuntimeException e) {
+                process.destroy();
+                end.complete(null);
+                fail(e);
+            }
+        }
+
+        private void complete() {
+            if (!cancelled && terminated.compareAndSet(false, true)) {
+                subscriber.onComplete();
+            }
+        }
+
+        private void fail(Throwable e) {
+            if (terminated.compareAndSet(false, true)) {
+                subscriber.onError(e);
+            }
+        }
+    }
+}
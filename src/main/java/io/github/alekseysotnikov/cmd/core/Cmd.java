@@ -1,158 +1,122 @@
 package io.github.alekseysotnikov.cmd.core;
 
-import org.cactoos.iterable.IterableOf;
-import org.cactoos.iterable.Joined;
-import org.cactoos.iterable.Mapped;
-import org.zeroturnaround.exec.ProcessExecutor;
-import org.zeroturnaround.exec.ProcessResult;
-import org.zeroturnaround.exec.StartedProcess;
-
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 
 /**
  * Command line representation with the additional features around a process execution
  */
 public final class Cmd implements ICmd {
-    private final Iterable<ProcessListenerAdapter> listeners;
+    private final Listeners listeners;
     private final Listening.BeforeStart[] configuring;
     private final String interpreter;
+    private final ThreadFactory threads;
 
     public Cmd() {
-        this(new IterableOf<>(), new Listening.BeforeStart[0], "");
+        this(new Listeners(), new Listening.BeforeStart[0], "", null);
     }
 
     public Cmd(Iterable<ProcessListenerAdapter> listeners, Listening.BeforeStart[] configuring, String interpreter) {
+        this(listeners, configuring, interpreter, null);
+    }
+
+    /**
+     * @param listeners
+     * @param configuring
+     * @param interpreter
+     * @param threads     threads to wait for processes and pump their streams, null for zt-exec's own threads
+     */
+    public Cmd(Iterable<ProcessListenerAdapter> listeners, Listening.BeforeStart[] configuring, String interpreter,
+               ThreadFactory threads) {
+        this(new Listeners().with(listeners), configuring, interpreter, threads);
+    }
+
+    /**
+     * @param listeners   listeners per hook
+     * @param configuring
+     * @param interpreter
+     * @param threads     threads to wait for processes and pump their streams, null for zt-exec's own threads
+     */
+    public Cmd(Listeners listeners, Listening.BeforeStart[] configuring, String interpreter, ThreadFactory threads) {
         this.listeners = listeners;
         this.configuring = configuring;
         this.interpreter = interpreter;
+        this.threads = threads;
     }
 
     @Override
     public ICmd configuring(Listening.BeforeStart... configuring) {
-        return new Cmd(listeners, configuring, interpreter);
+        return new Cmd(listeners, configuring, interpreter, threads);
     }
 
     @Override
     public ICmd listening(Listening.BeforeStart... beforeStart) {
-        return new Cmd(
-                new Joined<>(
-                        this.listeners,
-                        new Mapped<>(ProcessListenerAdapter::new,
-                                new IterableOf<>(beforeStart))),
-                configuring,
-                interpreter);
+        return new Cmd(listeners.with(beforeStart), configuring, interpreter, threads);
     }
 
     @Override
     public ICmd listening(Listening.AfterStart... afterStart) {
-        return new Cmd(
-                new Joined<>(
-                        this.listeners,
-                        new Mapped<>(ProcessListenerAdapter::new,
-                                new IterableOf<>(afterStart))),
-                configuring,
-                interpreter);
+        return new Cmd(listeners.with(afterStart), configuring, interpreter, threads);
     }
 
     @Override
     public ICmd listening(Listening.AfterFinish... afterFinish) {
-        return new Cmd(
-                new Joined<>(
-                        this.listeners,
-                        new Mapped<>(ProcessListenerAdapter::new,
-                                new IterableOf<>(afterFinish))),
-                configuring,
-                interpreter);
+        return new Cmd(listeners.with(afterFinish), configuring, interpreter, threads);
     }
 
     @Override
     public ICmd listening(Listening.AfterStop... afterStop) {
-        return new Cmd(
-                new Joined<>(
-                        this.listeners,
-                        new Mapped<>(ProcessListenerAdapter::new,
-                                new IterableOf<>(afterStop))),
-                configuring,
-                interpreter);
+        return new Cmd(listeners.with(afterStop), configuring, interpreter, threads);
     }
 
     @Override
     public ICmd interpreter(String interpreter) {
-        return new Cmd(listeners, configuring, interpreter);
+        return new Cmd(listeners, configuring, interpreter, threads);
+    }
+
+    @Override
+    public ICmd threads(ThreadFactory threads) {
+        return new Cmd(listeners, configuring, interpreter, threads);
     }
 
     @Override
     public Command command(String... command) {
-        return new BaseCommand(processExecutor(command));
+        return compiled().command(command);
     }
 
     @Override
     public Command command(Iterable<String> command) {
-        return new BaseCommand(processExecutor(command));
+        return compiled().command(command);
     }
 
-    private ProcessExecutor processExecutor(String... command) {
-        return processExecutor(new IterableOf<>(command));
+    @Override
+    public List<String> commandLine(Iterable<String> command) {
+        return compiled().commandLine(command);
     }
 
-    private ProcessExecutor processExecutor(Iterable<String> command) {
-        ProcessExecutor executor = new ProcessExecutor();
-
+    /**
+     * Resolve the configuring split, listeners and interpreter once
+     */
+    @Override
+    public ICmd compiled() {
         Map<Boolean, List<Listening.BeforeStart>> configuring = Arrays.stream(this.configuring).collect(
                 Collectors.groupingBy(c -> c instanceof Listening.AfterStop));
         List<Listening.BeforeStart> configuringBefore = configuring.getOrDefault(false, Collections.emptyList());
         List<Listening.BeforeStart> configuringAfter = configuring.getOrDefault(true, Collections.emptyList());
 
-        configuringBefore.forEach(c -> c.run(executor));
-        listeners.forEach(executor::addListener);
-        configuringAfter.forEach(c -> c.run(executor));
-
-        if (interpreter != null && !interpreter.trim().isEmpty()) {
-            command = new Joined<>(new IterableOf<>(interpreter), command);
-        }
-        return executor.command(command);
-    }
-
-    private static final class BaseCommand implements Command {
-        private final ProcessExecutor processExecutor;
-
-        BaseCommand(ProcessExecutor processExecutor) {
-            this.processExecutor = processExecutor;
-        }
-
-        /**
-         * See {@link ProcessExecutor#execute()}
-         */
-        @Override
-        public ProcessResult execute() throws IOException, TimeoutException, InterruptedException {
-            return processExecutor.execute();
-        }
-
-        /**
-         * See {@link ProcessExecutor#executeNoTimeout()}
-         */
-        @Override
-        public ProcessResult executeNoTimeout() throws IOException, InterruptedException {
-            return processExecutor.executeNoTimeout();
-        }
-
-        /**
-         * See {@link ProcessExecutor#start()}
-         */
-        @Override
-        public StartedProcess start() throws IOException {
-            return processExecutor.start();
-        }
-
-        @Override
-        public List<String> commandLine() {
-            return processExecutor.getCommand();
-        }
+        String[] prefix = interpreter != null && !interpreter.trim().isEmpty()
+                ? new String[]{interpreter}
+                : new String[0];
+        return new CompiledCmd(
+                this,
+                configuringBefore.toArray(new Listening.BeforeStart[0]),
+                listeners,
+                configuringAfter.toArray(new Listening.BeforeStart[0]),
+                prefix,
+                threads);
     }
 }
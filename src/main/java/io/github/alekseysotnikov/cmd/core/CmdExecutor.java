@@ -0,0 +1,271 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+import org.zeroturnaround.exec.stream.ExecuteStreamHandler;
+import org.zeroturnaround.exec.stream.PumpStreamHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Executor of the commands. It waits for the process and pumps its streams on the threads of the given factory,
+ * if any, and can be started asynchronously, without a thread waiting for the process.
+ * Pumps of zt-exec's own output buffer ({@link ProcessExecutor#readOutput(boolean)}) and of custom stream handlers
+ * keep their threads, use {@link io.github.alekseysotnikov.cmd.listeners.RedirectTo} to read the output instead
+ */
+final class CmdExecutor extends ProcessExecutor {
+    private static final Method ON_EXIT = method(Process.class, "onExit");
+    private static final Method PROCESS = method(waitForProcess(), "getProcess");
+    private static final Executor FINISHING = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "CmdExecutor-finishing");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ThreadFactory threads;
+    private final ThreadLocal<Function<Process, CompletableFuture<?>>> ready = new ThreadLocal<>();
+
+    /**
+     * @param threads threads to wait for the process and pump its streams, null for zt-exec's own threads
+     */
+    CmdExecutor(ThreadFactory threads) {
+        this.threads = threads;
+        streams(streams());
+    }
+
+    /**
+     * Start the process, zt-exec finishes it, calling the listeners and checking the exit value,
+     * once the process is ready for that. Finishing joins the pumps, so it runs on the threads of the factory
+     * or on a pool of its own. The callback is kept per calling thread, so concurrent starts do not mix
+     *
+     * @param ready when the process can be finished, for instance {@link ExitOf}
+     * @return result of the process, cancelling it destroys the process
+     */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<ProcessResult> startAsync(Function<Process, CompletableFuture<?>> ready) throws IOException {
+        if (PROCESS == null) {
+            throw new IllegalStateException("Unsupported zt-exec version, started process is not accessible");
+        }
+        this.ready.set(ready);
+        try {
+            return (CompletableFuture<ProcessResult>) start().getFuture();
+        } finally {
+            this.ready.remove();
+        }
+    }
+
+    @Override
+    public ProcessResult execute() throws IOException, InterruptedException, TimeoutException {
+        try {
+            return super.execute();
+        } catch (IOException | RuntimeException e) {
+            startFailed();
+            throw e;
+        }
+    }
+
+    @Override
+    public ProcessResult executeNoTimeout() throws IOException, InterruptedException {
+        try {
+            return super.executeNoTimeout();
+        } catch (IOException | RuntimeException e) {
+            startFailed();
+            throw e;
+        }
+    }
+
+    @Override
+    public StartedProcess start() throws IOException {
+        try {
+            return super.start();
+        } catch (IOException | RuntimeException e) {
+            startFailed();
+            throw e;
+        }
+    }
+
+    /**
+     * Plain zt-exec pumps are replaced with the same pumps on the threads of the factory
+     */
+    @Override
+    public ProcessExecutor streams(ExecuteStreamHandler streams) {
+        if (threads != null && streams != null && streams.getClass() == PumpStreamHandler.class) {
+            return super.streams(new Pumps((PumpStreamHandler) streams, threads));
+        }
+        return super.streams(streams);
+    }
+
+    @Override
+    protected ExecutorService newExecutor(String processName) {
+        if (ready.get() != null) {
+            return null;
+        }
+        return threads == null ? super.newExecutor(processName) : Executors.newSingleThreadExecutor(threads);
+    }
+
+    @Override
+    protected <T> Future<T> invokeSubmit(ExecutorService executor, Callable<T> task) {
+        Function<Process, CompletableFuture<?>> ready = this.ready.get();
+        if (ready == null) {
+            return super.invokeSubmit(executor, task);
+        }
+        final Process process = process(task);
+        final Callable<T> wrapped = wrapTask(task);
+        final Executor runner = threads == null ? FINISHING : t -> threads.newThread(t).start();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        ready.apply(process).whenComplete((ignored, e) -> runner.execute(() -> {
+            try {
+                result.complete(wrapped.call());
+            } catch (Exception ex) {
+                result.completeExceptionally(ex);
+            }
+        }));
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                process.destroy();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Wait for the exit through {@code Process.onExit()} on Java 9+ first, since {@code Process.waitFor()} pins
+     * a virtual thread to its carrier, then let zt-exec finish the process as usual
+     */
+    @Override
+    protected <T> Callable<T> wrapTask(Callable<T> task) {
+        final Callable<T> wrapped = super.wrapTask(task);
+        if (ON_EXIT == null || PROCESS == null || !virtual(threads)) {
+            return wrapped;
+        }
+        return () -> {
+            ((Future<?>) ON_EXIT.invoke(process(task))).get();
+            return wrapped.call();
+        };
+    }
+
+    /**
+     * Let the listeners release what they took for the start, see {@link Listening.StartFailed}
+     */
+    private void startFailed() {
+        for (Object listener : new ListenersOf(this).value()) {
+            if (listener instanceof Listening.StartFailed) {
+                ((Listening.StartFailed) listener).run(this);
+            }
+        }
+    }
+
+    private static Process process(Callable<?> task) {
+        try {
+            return (Process) PROCESS.invoke(task);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Started process is not accessible", e);
+        }
+    }
+
+    private static boolean virtual(ThreadFactory threads) {
+        return threads instanceof VirtualThreads && ((VirtualThreads) threads).supported();
+    }
+    private static Class<?> waitForProcess() {
+        try {
+            return Class.forName("org.zeroturnaround.exec.WaitForProcess");
+        } catch (ClassNotFoundException e) {
+            return Object.class;
+        }
+    }
+
+    private static Method method(Class<?> type, String name) {
+        try {
+            Method method = type.getDeclaredMethod(name);
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A blocking read of a pipe occupies a carrier of virtual threads, so on virtual threads the output and error
+     * are polled instead, and read to the end only when zt-exec stops the pumps after the process exit
+     */
+    private static final class Pumps extends PumpStreamHandler {
+        private static final int MAX_PAUSE_MILLIS = 10;
+        private final ThreadFactory threads;
+        private final boolean polling;
+        private volatile boolean stopping;
+
+        Pumps(PumpStreamHandler pumps, ThreadFactory threads) {
+            super(pumps.getOut(), pumps.getErr(), pumps.getInput());
+            this.threads = threads;
+            this.polling = virtual(threads);
+        }
+
+        @Override
+        protected void createProcessOutputPump(InputStream is, OutputStream os) {
+            outputThread = polling ? newThread(() -> poll(is, os)) : createPump(is, os);
+        }
+
+        @Override
+        protected void createProcessErrorPump(InputStream is, OutputStream os) {
+            errorThread = polling ? newThread(() -> poll(is, os)) : createPump(is, os);
+        }
+
+        @Override
+        public void stop() {
+            stopping = true;
+            try {
+                super.stop();
+            } finally {
+                stopping = false;
+            }
+        }
+
+        @Override
+        protected Thread newThread(Runnable task) {
+            return threads.newThread(wrapTask(task));
+        }
+
+        private void poll(InputStream is, OutputStream os) {
+            final byte[] buffer = new byte[8192];
+            int pause = 1;
+            try {
+                while (true) {
+                    int available = is.available();
+                    if (available > 0) {
+                        int read = is.read(buffer, 0, Math.min(available, buffer.length));
+                        if (read < 0) {
+                            return;
+                        }
+                        os.write(buffer, 0, read);
+                        pause = 1;
+                    } else if (stopping) {
+                        int read;
+                        while ((read = is.read(buffer)) > 0) {
+                            os.write(buffer, 0, read);
+                        }
+                        return;
+                    } else {
+                        Thread.sleep(pause);
+                        pause = Math.min(pause * 2, MAX_PAUSE_MILLIS);
+                    }
+                }
+            } catch (IOException e) {
+                // the process is gone, same as zt-exec's pumps
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
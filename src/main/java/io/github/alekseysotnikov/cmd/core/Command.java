@@ -5,7 +5,9 @@ import org.zeroturnaround.exec.StartedProcess;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 public interface Command {
     ProcessResult execute() throws IOException, TimeoutException, InterruptedException;
@@ -14,5 +16,37 @@ public interface Command {
 
     StartedProcess start() throws IOException;
 
+    /**
+     * Start the process without a thread waiting for it
+     *
+     * @return result of the process, cancelling it destroys the process
+     */
+    CompletableFuture<ProcessResult> async() throws IOException;
+
+    /**
+     * Output stream of the process, read as far as the subscriber requests. Every subscriber starts
+     * a new process, cancelling the subscription destroys it. The output is not buffered for the result
+     *
+     * @return publisher of the output chunks
+     */
+    Flow.Publisher<byte[]> chunks();
+
+    /**
+     * Start the process and read its output stream line by line while it is running.
+     * Closing the stream destroys the process if it is still running
+     *
+     * @return lines of the output stream
+     */
+    Stream<String> lines() throws IOException;
+
+    /**
+     * Start the process and read either its output or error stream line by line while it is running.
+     * Closing the stream destroys the process if it is still running
+     *
+     * @param fromErrorStream
+     * @return lines of the chosen stream
+     */
+    Stream<String> lines(boolean fromErrorStream) throws IOException;
+
     List<String> commandLine();
 }
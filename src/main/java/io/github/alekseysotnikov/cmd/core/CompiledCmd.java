@@ -0,0 +1,111 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Command line template with the configuring split, listeners and interpreter resolved into flat arrays once,
+ * the listeners are added to every executor as one {@link Listeners}.
+ * Creating a command costs a new executor only, and the template is safe to share across threads
+ */
+public final class CompiledCmd implements ICmd {
+    private final Cmd source;
+    private final Listening.BeforeStart[] configuringBefore;
+    private final Listeners listeners;
+    private final Listening.BeforeStart[] configuringAfter;
+    private final String[] interpreter;
+    private final ThreadFactory threads;
+
+    CompiledCmd(Cmd source,
+                Listening.BeforeStart[] configuringBefore,
+                Listeners listeners,
+                Listening.BeforeStart[] configuringAfter,
+                String[] interpreter,
+                ThreadFactory threads) {
+        this.source = source;
+        this.configuringBefore = configuringBefore;
+        this.listeners = listeners;
+        this.configuringAfter = configuringAfter;
+        this.interpreter = interpreter;
+        this.threads = threads;
+    }
+
+    @Override
+    public ICmd configuring(Listening.BeforeStart... configuring) {
+        return source.configuring(configuring).compiled();
+    }
+
+    @Override
+    public ICmd listening(Listening.BeforeStart... beforeStart) {
+        return source.listening(beforeStart).compiled();
+    }
+
+    @Override
+    public ICmd listening(Listening.AfterStart... afterStart) {
+        return source.listening(afterStart).compiled();
+    }
+
+    @Override
+    public ICmd listening(Listening.AfterFinish... afterFinish) {
+        return source.listening(afterFinish).compiled();
+    }
+
+    @Override
+    public ICmd listening(Listening.AfterStop... afterStop) {
+        return source.listening(afterStop).compiled();
+    }
+
+    @Override
+    public ICmd interpreter(String interpreter) {
+        return source.interpreter(interpreter).compiled();
+    }
+
+    @Override
+    public ICmd threads(ThreadFactory threads) {
+        return source.threads(threads).compiled();
+    }
+
+    @Override
+    public ICmd compiled() {
+        return this;
+    }
+
+    @Override
+    public Command command(String... command) {
+        List<String> commandLine = new ArrayList<>(interpreter.length + command.length);
+        Collections.addAll(commandLine, interpreter);
+        Collections.addAll(commandLine, command);
+        return new BaseCommand(processExecutor(commandLine), () -> processExecutor(commandLine));
+    }
+
+    @Override
+    public Command command(Iterable<String> command) {
+        List<String> commandLine = commandLine(command);
+        return new BaseCommand(processExecutor(commandLine), () -> processExecutor(commandLine));
+    }
+
+    @Override
+    public List<String> commandLine(Iterable<String> command) {
+        List<String> commandLine = new ArrayList<>(Arrays.asList(interpreter));
+        command.forEach(commandLine::add);
+        return commandLine;
+    }
+
+    private CmdExecutor processExecutor(List<String> command) {
+        CmdExecutor executor = new CmdExecutor(threads);
+        for (Listening.BeforeStart configuring : configuringBefore) {
+            configuring.run(executor);
+        }
+        if (!listeners.isEmpty()) {
+            executor.addListener(listeners);
+        }
+        for (Listening.BeforeStart configuring : configuringAfter) {
+            configuring.run(executor);
+        }
+        executor.command(new ArrayList<>(command));
+        return executor;
+    }
+}
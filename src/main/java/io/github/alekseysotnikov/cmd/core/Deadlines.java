@@ -0,0 +1,309 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessExecutor;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deadlines of any number of processes kept in a hashed timer wheel served by one thread, scheduling and
+ * cancelling a deadline costs O(1) and no thread of its own. An expired process gets SIGTERM and, if it is
+ * still alive after the grace period, SIGKILL. The process stops as usual then, so {@link Listening.AfterStop}
+ * listeners like {@code CleanUp} or {@code RedirectToFile} run. Deadlines are per process, see
+ * {@link #after(long, TimeUnit)}, or shared by a group of processes, see {@link #group(long, TimeUnit)}.
+ * Cancelled deadlines are unlinked from the wheel within a turn of it, and while no bucket is due the thread parks
+ * until the next non-empty one
+ */
+public final class Deadlines implements AutoCloseable {
+    private final long tick;
+    private final long grace;
+    private final Timeout[] wheel;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final long origin = System.nanoTime();
+    private final Thread ticker;
+    private volatile long wakeAt;
+    private volatile int scheduled;
+    private volatile boolean closed;
+
+    /**
+     * Ticks every 10 ms over 512 buckets, SIGKILL follows SIGTERM in 5 seconds
+     */
+    public Deadlines() {
+        this(10, 512, 5000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param tick    precision of the deadlines
+     * @param buckets size of the wheel, deadlines further than {@code tick * buckets} take several rounds
+     * @param grace   time between SIGTERM and SIGKILL
+     * @param unit
+     */
+    public Deadlines(long tick, int buckets, long grace, TimeUnit unit) {
+        if (tick <= 0 || buckets <= 0 || grace < 0) {
+            throw new IllegalArgumentException(
+                    "Tick and buckets have to be positive and grace non-negative, got " + tick + ", " + buckets + ", " + grace);
+        }
+        this.tick = unit.toNanos(tick);
+        this.grace = unit.toNanos(grace);
+        this.wheel = new Timeout[buckets];
+        for (int i = 0; i < buckets; i++) {
+            wheel[i] = new Timeout(0, null);
+            wheel[i].prev = wheel[i];
+            wheel[i].next = wheel[i];
+        }
+        this.ticker = new Thread(this::tick, "Deadlines");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * @param timeout time the process may run since its start
+     * @param unit
+     * @return configuring which terminates the process after the timeout
+     */
+    public Listening.BeforeStart after(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        return executor -> {
+            AtomicReference<Timeout> scheduled = new AtomicReference<>();
+            executor.addListener(new ProcessListenerAdapter(
+                    e -> {/*nothing*/},
+                    (process, e) -> scheduled.set(schedule(System.nanoTime() + nanos, () -> terminate(process))),
+                    (process, result) -> {/*nothing*/},
+                    process -> {
+                        Timeout deadline = scheduled.get();
+                        if (deadline != null) {
+                            deadline.cancel();
+                        }
+                    }));
+        };
+    }
+
+    /**
+     * @param timeout time left to all the processes started with the group
+     * @param unit
+     * @return deadline shared by the processes configured with it
+     */
+    public Group group(long timeout, TimeUnit unit) {
+        return new Group(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @return number of deadlines in the wheel, cancelled ones included until the ticker unlinks them
+     */
+    public int scheduled() {
+        return scheduled;
+    }
+
+    /**
+     * Stop the wheel, pending deadlines never expire
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(ticker);
+    }
+
+    private Timeout schedule(long deadline, Runnable action) {
+        if (closed) {
+            throw new IllegalStateException("Deadlines are closed");
+        }
+        Timeout timeout = new Timeout(deadline, action);
+        added.add(timeout);
+        if (deadline < wakeAt) {
+            LockSupport.unpark(ticker);
+        }
+        return timeout;
+    }
+
+    /**
+     * SIGTERM now and SIGKILL after the grace period
+     */
+    private void terminate(Process process) {
+        if (!process.isAlive()) {
+            return;
+        }
+        process.destroy();
+        schedule(System.nanoTime() + grace, () -> {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        });
+    }
+
+    private void tick() {
+        long ticks = 0;
+        while (!closed) {
+            long next = origin + (ticks + 1) * tick;
+            long now = System.nanoTime();
+            if (now < next) {
+                ticks = park(ticks, now);
+                continue;
+            }
+            ticks++;
+            for (Timeout timeout = cancellations.poll(); timeout != null; timeout = cancellations.poll()) {
+                unlink(timeout);
+            }
+            for (Timeout timeout = added.poll(); timeout != null; timeout = added.poll()) {
+                if (timeout.cancelled) {
+                    continue;
+                }
+                long due = Math.max(ticks, (timeout.deadline - origin + tick - 1) / tick);
+                timeout.rounds = (due - ticks) / wheel.length;
+                link(wheel[(int) (due % wheel.length)], timeout);
+            }
+            Timeout bucket = wheel[(int) (ticks % wheel.length)];
+            for (Timeout timeout = bucket.next; timeout != bucket; ) {
+                Timeout following = timeout.next;
+                if (timeout.cancelled) {
+                    unlink(timeout);
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                } else {
+                    unlink(timeout);
+                    try {
+                        timeout.action.run();
+                    } catch (RuntimeException e) {
+                        // one failed termination does not stop the others
+                    }
+                }
+                timeout = following;
+            }
+        }
+    }
+
+    /**
+     * Sleep until the next non-empty bucket is due, or until a sooner deadline or a cancellation arrives
+     *
+     * @return tick to go on from, the empty wheel skips the ticks it slept through
+     */
+    private long park(long ticks, long now) {
+        if (!cancellations.isEmpty()) {
+            wakeAt = origin + (ticks + 1) * tick;
+        } else if (scheduled == 0) {
+            wakeAt = Long.MAX_VALUE;
+        } else {
+            int ahead = 1;
+            for (Timeout bucket = wheel[(int) ((ticks + 1) % wheel.length)]; bucket.next == bucket; ) {
+                ahead++;
+                bucket = wheel[(int) ((ticks + ahead) % wheel.length)];
+            }
+            wakeAt = origin + (ticks + ahead) * tick;
+        }
+        if (added.isEmpty() && !closed) {
+            if (wakeAt == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, wakeAt - now);
+            }
+        }
+        wakeAt = 0;
+        return scheduled == 0 ? Math.max(ticks, (System.nanoTime() - origin) / tick - 1) : ticks;
+    }
+
+    /**
+     * Only the ticker links and unlinks
+     */
+    private void link(Timeout bucket, Timeout timeout) {
+        timeout.prev = bucket.prev;
+        timeout.next = bucket;
+        bucket.prev.next = timeout;
+        bucket.prev = timeout;
+        scheduled++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.next == null) {
+            return;
+        }
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.next = null;
+        timeout.prev = null;
+        scheduled--;
+    }
+
+    /**
+     * Deadline shared by a group of processes, e.g. stages of a pipeline or commands of a batch.
+     * Once it expired or was cancelled, running processes of the group are terminated and new ones are not started
+     */
+    public final class Group implements Listening.BeforeStart {
+        private final Set<Process> running = ConcurrentHashMap.newKeySet();
+        private final Timeout timeout;
+        private volatile boolean expired;
+
+        private Group(long deadline) {
+            this.timeout = schedule(deadline, this::expire);
+        }
+
+        @Override
+        public void run(ProcessExecutor executor) {
+            if (expired) {
+                throw new IllegalStateException("Deadline of the group has passed");
+            }
+            executor.addListener(new ProcessListenerAdapter(
+                    e -> {/*nothing*/},
+                    (process, e) -> {
+                        running.add(process);
+                        if (expired) {
+                            terminate(process);
+                        }
+                    },
+                    (process, result) -> {/*nothing*/},
+                    running::remove));
+        }
+
+        /**
+         * Terminate the processes of the group right away, e.g. when the caller gave up on them
+         */
+        public void cancel() {
+            timeout.cancel();
+            expire();
+        }
+
+        public boolean expired() {
+            return expired;
+        }
+
+        private void expire() {
+            expired = true;
+            for (Process process : running) {
+                terminate(process);
+            }
+        }
+    }
+
+    /**
+     * Node of a bucket, a bucket itself is an empty node linked to itself
+     */
+    private final class Timeout {
+        private final long deadline;
+        private final Runnable action;
+        private volatile boolean cancelled;
+        private long rounds;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(long deadline, Runnable action) {
+            this.deadline = deadline;
+            this.action = action;
+        }
+
+        /**
+         * The ticker unlinks the timeout within a turn of the wheel, so the process it holds can go long before
+         * the deadline
+         */
+        void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancellations.add(this);
+        }
+    }
+}
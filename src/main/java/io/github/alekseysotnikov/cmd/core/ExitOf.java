@@ -0,0 +1,49 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exit of the process as a future. It is {@code Process.onExit()} on Java 9+, which needs no thread of ours,
+ * and a daemon thread waiting for the process on Java 8
+ */
+final class ExitOf {
+    private static final Method ON_EXIT = onExit();
+    private final Process process;
+
+    ExitOf(Process process) {
+        this.process = process;
+    }
+
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Process> future() {
+        if (ON_EXIT != null) {
+            try {
+                return (CompletableFuture<Process>) ON_EXIT.invoke(process);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Exit of " + process + " is not accessible", e);
+            }
+        }
+        CompletableFuture<Process> exit = new CompletableFuture<>();
+        Thread waiting = new Thread(() -> {
+            try {
+                process.waitFor();
+                exit.complete(process);
+            } catch (InterruptedException e) {
+                exit.completeExceptionally(e);
+            }
+        }, "ExitOf-" + process);
+        waiting.setDaemon(true);
+        waiting.start();
+        return exit;
+    }
+
+    private static Method onExit() {
+        try {
+            return Process.class.getMethod("onExit");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
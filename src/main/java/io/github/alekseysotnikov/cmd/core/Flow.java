@@ -0,0 +1,30 @@
+package io.github.alekseysotnikov.cmd.core;
+
+/**
+ * Demand-driven publishing of items, the same contract as {@code java.util.concurrent.Flow} of Java 9
+ * and Reactive Streams, for the project builds for Java 8. Adapting to either of them is a one-liner
+ */
+public interface Flow {
+    interface Publisher<T> {
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    interface Subscription {
+        /**
+         * @param n number of items the subscriber is ready to take, has to be positive
+         */
+        void request(long n);
+
+        void cancel();
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Output of a result computed as a whole, published as one chunk on the first request.
+ * Suits commands which are not backed by a process of their own
+ */
+public final class FuturePublisher implements Flow.Publisher<byte[]> {
+    private final Callable<CompletableFuture<? extends ProcessResult>> result;
+
+    /**
+     * @param result started on the first request of every subscriber
+     */
+    public FuturePublisher(Callable<CompletableFuture<? extends ProcessResult>> result) {
+        this.result = result;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super byte[]> subscriber) {
+        AtomicBoolean requested = new AtomicBoolean();
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (!requested.compareAndSet(false, true)) {
+                    return;
+                }
+                if (n <= 0) {
+                    subscriber.onError(new IllegalArgumentException("Requested " + n + " chunks, but it has to be positive"));
+                    return;
+                }
+                try {
+                    result.call().whenComplete((r, e) -> {
+                        if (e == null) {
+                            subscriber.onNext(r.output());
+                            subscriber.onComplete();
+                        } else {
+                            subscriber.onError(e);
+                        }
+                    });
+                } catch (Exception e) {
+                    subscriber.onError(e);
+                }
+            }
+
+            @Override
+            public void cancel() {
+                requested.set(true);
+            }
+        });
+    }
+}
@@ -1,5 +1,8 @@
 package io.github.alekseysotnikov.cmd.core;
 
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
 public interface ICmd {
     ICmd configuring(Listening.BeforeStart... configuring);
 
@@ -16,6 +19,18 @@ public interface ICmd {
      */
     ICmd interpreter(String interpreter);
 
+    /**
+     * Specify threads to wait for the processes and pump their streams, see {@link VirtualThreads}
+     */
+    ICmd threads(ThreadFactory threads);
+
+    /**
+     * Resolve the template once, so creating commands from it is cheap
+     *
+     * @return immutable compiled template
+     */
+    ICmd compiled();
+
     /**
      * Create executable command
      *
@@ -31,4 +46,12 @@ public interface ICmd {
      * @return executable command
      */
     Command command(Iterable<String> command);
+
+    /**
+     * Command line the command would be started with, including the interpreter. Nothing is configured
+     *
+     * @param command
+     * @return command line
+     */
+    List<String> commandLine(Iterable<String> command);
 }
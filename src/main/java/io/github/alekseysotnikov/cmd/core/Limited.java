@@ -0,0 +1,231 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Command admitted by a {@link Limiter}. The slot is held until the process exits, or until the stream
+ * of lines is closed or the subscription ends. Built from a template, it sees the start of its process,
+ * otherwise the spawn latency of executed commands is unknown
+ */
+final class Limited implements Command {
+    private final Limiter limiter;
+    private final Command command;
+    private final ThreadLocal<Long> spawned = new ThreadLocal<>();
+
+    Limited(Limiter limiter, Command command) {
+        this.limiter = limiter;
+        this.command = command;
+    }
+
+    Limited(Limiter limiter, ICmd cmd, String... command) {
+        this.limiter = limiter;
+        this.command = cmd
+                .listening((Listening.AfterStart) (process, executor) -> spawned.set(System.nanoTime()))
+                .command(command);
+    }
+
+    @Override
+    public ProcessResult execute() throws IOException, TimeoutException, InterruptedException {
+        limiter.acquire();
+        spawned.remove();
+        long started = System.nanoTime();
+        boolean failed = false;
+        try {
+            return command.execute();
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        } finally {
+            release(started, failed);
+        }
+    }
+
+    @Override
+    public ProcessResult executeNoTimeout() throws IOException, InterruptedException {
+        limiter.acquire();
+        spawned.remove();
+        long started = System.nanoTime();
+        boolean failed = false;
+        try {
+            return command.executeNoTimeout();
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        } finally {
+            release(started, failed);
+        }
+    }
+
+    @Override
+    public StartedProcess start() throws IOException {
+        acquire();
+        long started = System.nanoTime();
+        StartedProcess process;
+        try {
+            process = command.start();
+        } catch (IOException | RuntimeException e) {
+            release(started, true);
+            throw e;
+        }
+        long spawn = spawn(started);
+        CompletableFuture<?> exit = process.getFuture() instanceof CompletableFuture
+                ? (CompletableFuture<?>) process.getFuture()
+                : new ExitOf(process.getProcess()).future();
+        exit.whenComplete((r, e) -> limiter.release(command.commandLine(), spawn, System.nanoTime() - started, false));
+        return process;
+    }
+
+    @Override
+    public CompletableFuture<ProcessResult> async() throws IOException {
+        acquire();
+        long started = System.nanoTime();
+        CompletableFuture<ProcessResult> result;
+        try {
+            result = command.async();
+        } catch (IOException | RuntimeException e) {
+            release(started, true);
+            throw e;
+        }
+        long spawn = spawn(started);
+        result.whenComplete((r, e) -> limiter.release(command.commandLine(), spawn, System.nanoTime() - started, false));
+        return result;
+    }
+
+    /**
+     * Admission blocks the subscribing thread, a rejection is signalled to the subscriber
+     */
+    @Override
+    public Flow.Publisher<byte[]> chunks() {
+        return subscriber -> {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException | RuntimeException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                        // rejected
+                    }
+
+                    @Override
+                    public void cancel() {
+                        // rejected
+                    }
+                });
+                subscriber.onError(e);
+                return;
+            }
+            long started = System.nanoTime();
+            AtomicBoolean done = new AtomicBoolean();
+            Runnable release = () -> {
+                if (done.compareAndSet(false, true)) {
+                    limiter.release(command.commandLine(), -1, System.nanoTime() - started, false);
+                }
+            };
+            command.chunks().subscribe(new Flow.Subscriber<byte[]>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(new Flow.Subscription() {
+                        @Override
+                        public void request(long n) {
+                            subscription.request(n);
+                        }
+
+                        @Override
+                        public void cancel() {
+                            subscription.cancel();
+                            release.run();
+                        }
+                    });
+                }
+
+                @Override
+                public void onNext(byte[] item) {
+                    subscriber.onNext(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    release.run();
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    release.run();
+                    subscriber.onComplete();
+                }
+            });
+        };
+    }
+
+    @Override
+    public Stream<String> lines() throws IOException {
+        return lines(false);
+    }
+
+    @Override
+    public Stream<String> lines(boolean fromErrorStream) throws IOException {
+        acquire();
+        long started = System.nanoTime();
+        Stream<String> lines;
+        try {
+            lines = command.lines(fromErrorStream);
+        } catch (IOException | RuntimeException e) {
+            release(started, true);
+            throw e;
+        }
+        long spawn = spawn(started);
+        AtomicBoolean done = new AtomicBoolean();
+        return lines.onClose(() -> {
+            if (done.compareAndSet(false, true)) {
+                limiter.release(command.commandLine(), spawn, System.nanoTime() - started, false);
+            }
+        });
+    }
+
+    @Override
+    public List<String> commandLine() {
+        return command.commandLine();
+    }
+
+    /**
+     * @param failed true if the call failed, it counts as a start failure if the process was not seen started
+     */
+    private void release(long started, boolean failed) {
+        Long at = spawned.get();
+        spawned.remove();
+        limiter.release(command.commandLine(), at == null ? -1 : at - started,
+                System.nanoTime() - started, failed && at == null);
+    }
+
+    /**
+     * @return time from the given start to the start of the process, or to now if it was not seen
+     */
+    private long spawn(long started) {
+        Long at = spawned.get();
+        spawned.remove();
+        return (at == null ? System.nanoTime() : at) - started;
+    }
+
+    private void acquire() throws IOException {
+        spawned.remove();
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for admission of " + command.commandLine());
+        }
+    }
+}
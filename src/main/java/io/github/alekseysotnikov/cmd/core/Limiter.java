@@ -0,0 +1,249 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control in front of commands. At most {@link #limit()} processes run at once, further commands
+ * wait in a bounded queue for a bounded time and are rejected with {@link RejectedExecutionException} after that.
+ * The limit adapts AIMD-style: it shrinks by a tenth once the recent spawn latency of an executable gets twice as long
+ * as its usual one or a process can not be started at all, which is how fork contention, memory pressure
+ * and descriptor exhaustion show up. It grows by one per limit's worth of completions while more processes
+ * in flight still finish more work, that is while the runtime of an executable grows slower than the number
+ * of processes in flight. Runtimes of different lengths alone never shrink the limit
+ */
+public final class Limiter {
+    private static final double BACKOFF = 0.9;
+    private static final double TOLERANCE = 2.0;
+    private final int min;
+    private final int max;
+    private final int maxQueue;
+    private final long maxWait;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    private final Map<String, Baseline> spawns = new HashMap<>();
+    private final Map<String, Gradient> runtimes = new HashMap<>();
+    private final LongAdder rejections = new LongAdder();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private int sinceDecrease;
+
+    /**
+     * Starts at a quarter of the max limit, queues up to the max limit of commands for a minute
+     *
+     * @param max max number of processes at once
+     */
+    public Limiter(int max) {
+        this(Math.max(1, max / 4), 1, max, max, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param initial  initial limit
+     * @param min      the limit never goes below
+     * @param max      the limit never goes above
+     * @param maxQueue max number of waiting commands
+     * @param maxWait  max time a command waits for admission
+     * @param unit
+     */
+    public Limiter(int initial, int min, int max, int maxQueue, long maxWait, TimeUnit unit) {
+        if (min < 1 || initial < min || max < initial || maxQueue < 0 || maxWait < 0) {
+            throw new IllegalArgumentException("Limits have to keep 1 <= min <= initial <= max, got "
+                    + min + ", " + initial + ", " + max + " and queue " + maxQueue + ", wait " + maxWait);
+        }
+        this.limit = initial;
+        this.min = min;
+        this.max = max;
+        this.maxQueue = maxQueue;
+        this.maxWait = unit.toNanos(maxWait);
+    }
+
+    /**
+     * @param command
+     * @return command admitted by the limiter before it starts
+     */
+    public Command command(Command command) {
+        return new Limited(this, command);
+    }
+
+    /**
+     * Command admitted by the limiter, which also knows the spawn latency of its process when it is executed
+     *
+     * @param cmd     template
+     * @param command
+     * @return command admitted by the limiter before it starts
+     */
+    public Command command(ICmd cmd, String... command) {
+        return new Limited(this, cmd, command);
+    }
+
+    /**
+     * @return current max number of processes at once
+     */
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of commands waiting for admission
+     */
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * Wait for a free slot
+     *
+     * @throws RejectedExecutionException if the queue is full or the wait took too long
+     */
+    void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && queued == 0) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueue) {
+                rejections.increment();
+                throw new RejectedExecutionException(
+                        "Limit of " + (int) limit + " processes is reached and " + queued + " commands are waiting");
+            }
+            queued++;
+            try {
+                long left = maxWait;
+                while (inFlight >= (int) limit) {
+                    if (left <= 0) {
+                        rejections.increment();
+                        throw new RejectedExecutionException("No process out of " + (int) limit
+                                + " finished within " + TimeUnit.NANOSECONDS.toMillis(maxWait) + " ms");
+                    }
+                    left = released.awaitNanos(left);
+                }
+                inFlight++;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Free the slot and adapt the limit to the observed execution
+     *
+     * @param commandLine
+     * @param spawn       spawn latency in nanoseconds, negative if unknown
+     * @param runtime     runtime in nanoseconds
+     * @param failed      true if the process could not be started
+     */
+    void release(List<String> commandLine, long spawn, long runtime, boolean failed) {
+        String executable = commandLine.isEmpty() ? "" : new File(commandLine.get(0)).getName();
+        lock.lock();
+        try {
+            boolean congested = failed || spawns.computeIfAbsent(executable, e -> new Baseline()).congested(spawn);
+            boolean saturated = runtimes.computeIfAbsent(executable, e -> new Gradient()).saturated(inFlight, runtime);
+            inFlight--;
+            int before = (int) limit;
+            sinceDecrease++;
+            if (congested) {
+                if (sinceDecrease >= limit) {
+                    limit = Math.max(min, limit * BACKOFF);
+                    sinceDecrease = 0;
+                }
+            } else if (!saturated && inFlight + 1 >= limit / 2) {
+                limit = Math.min(max, limit + 1 / limit);
+            }
+            if ((int) limit > before) {
+                released.signalAll();
+            } else {
+                released.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Short and long term averages of the samples, a sample alone is not taken for congestion
+     */
+    private static final class Baseline {
+        private static final double RECENT = 0.2;
+        private static final double USUAL = 0.01;
+        private double recent = -1;
+        private double usual = -1;
+
+        boolean congested(long sample) {
+            if (sample < 0) {
+                return false;
+            }
+            if (recent < 0) {
+                recent = sample;
+                usual = sample;
+                return false;
+            }
+            recent += RECENT * (sample - recent);
+            usual += USUAL * (sample - usual);
+            return recent > usual * TOLERANCE;
+        }
+    }
+
+    /**
+     * Exponentially weighted least squares fit of the runtime over the number of processes in flight.
+     * Once the runtime grows in proportion to the processes in flight, more of them do not finish more work
+     */
+    private static final class Gradient {
+        private static final double WEIGHT = 0.02;
+        private static final int WARM_UP = 20;
+        private static final double MIN_VARIANCE = 0.01;
+        private double load;
+        private double runtime;
+        private double covariance;
+        private double variance;
+        private int samples;
+
+        boolean saturated(int inFlight, long sample) {
+            if (samples++ == 0) {
+                load = inFlight;
+                runtime = sample;
+                return false;
+            }
+            double loadDelta = inFlight - load;
+            double runtimeDelta = sample - runtime;
+            load += WEIGHT * loadDelta;
+            runtime += WEIGHT * runtimeDelta;
+            covariance = (1 - WEIGHT) * (covariance + WEIGHT * loadDelta * runtimeDelta);
+            variance = (1 - WEIGHT) * (variance + WEIGHT * loadDelta * loadDelta);
+            return samples >= WARM_UP && variance >= MIN_VARIANCE && covariance / variance * load >= runtime;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.stream.LogOutputStream;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Hands lines of a process stream over to a reader through a bounded queue.
+ * When the reader falls behind the pumping thread blocks, so the process blocks on its pipe and memory stays bounded
+ */
+final class LineStream extends LogOutputStream implements Iterator<String> {
+    private static final String END = new String("END");
+    private final BlockingQueue<String> lines;
+    private volatile boolean closed;
+    private String next;
+
+    LineStream(int capacity) {
+        this.lines = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Called by the pumping thread, waits for the reader while the queue is full
+     */
+    @Override
+    protected void processLine(String line) {
+        try {
+            while (!closed && !lines.offer(line, 100, TimeUnit.MILLISECONDS)) {
+                // reader is busy, hold the process back
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the end of the stream, called after the process stopped and its streams were drained
+     */
+    void end() {
+        flush();
+        processLine(END);
+    }
+
+    /**
+     * Stops accepting lines, the reader will not see any of them anymore
+     */
+    void discard() {
+        closed = true;
+        lines.clear();
+    }
+
+    Stream<String> stream(Runnable onClose) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                false)
+                .onClose(() -> {
+                    discard();
+                    onClose.run();
+                });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = lines.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next line", e);
+            }
+        }
+        return next != END;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String line = next;
+        next = null;
+        return line;
+    }
+}
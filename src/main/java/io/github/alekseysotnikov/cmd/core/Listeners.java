@@ -0,0 +1,128 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.listener.ProcessListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable listeners of a template kept in one flat array per hook, so an event reaches only the listeners
+ * of its hook. One instance is shared by all commands of the template and appears to zt-exec as a single listener
+ */
+public final class Listeners extends ProcessListener {
+    private final Listening.BeforeStart[] beforeStart;
+    private final Listening.AfterStart[] afterStart;
+    private final Listening.AfterFinish[] afterFinish;
+    private final Listening.AfterStop[] afterStop;
+
+    public Listeners() {
+        this(new Listening.BeforeStart[0], new Listening.AfterStart[0],
+                new Listening.AfterFinish[0], new Listening.AfterStop[0]);
+    }
+
+    private Listeners(Listening.BeforeStart[] beforeStart, Listening.AfterStart[] afterStart,
+                      Listening.AfterFinish[] afterFinish, Listening.AfterStop[] afterStop) {
+        this.beforeStart = beforeStart;
+        this.afterStart = afterStart;
+        this.afterFinish = afterFinish;
+        this.afterStop = afterStop;
+    }
+
+    public Listeners with(Listening.BeforeStart... beforeStart) {
+        return new Listeners(joined(this.beforeStart, beforeStart), afterStart, afterFinish, afterStop);
+    }
+
+    public Listeners with(Listening.AfterStart... afterStart) {
+        return new Listeners(beforeStart, joined(this.afterStart, afterStart), afterFinish, afterStop);
+    }
+
+    public Listeners with(Listening.AfterFinish... afterFinish) {
+        return new Listeners(beforeStart, afterStart, joined(this.afterFinish, afterFinish), afterStop);
+    }
+
+    public Listeners with(Listening.AfterStop... afterStop) {
+        return new Listeners(beforeStart, afterStart, afterFinish, joined(this.afterStop, afterStop));
+    }
+
+    /**
+     * Listeners of zt-exec, e.g. {@link ProcessListenerAdapter}, take part in every hook
+     *
+     * @param listeners
+     */
+    public Listeners with(Iterable<? extends ProcessListener> listeners) {
+        List<Listening.BeforeStart> before = new ArrayList<>();
+        List<Listening.AfterStart> started = new ArrayList<>();
+        List<Listening.AfterFinish> finished = new ArrayList<>();
+        List<Listening.AfterStop> stopped = new ArrayList<>();
+        for (ProcessListener listener : listeners) {
+            before.add(listener::beforeStart);
+            started.add(listener::afterStart);
+            finished.add(listener::afterFinish);
+            stopped.add(listener::afterStop);
+        }
+        return new Listeners(
+                joined(beforeStart, before.toArray(new Listening.BeforeStart[0])),
+                joined(afterStart, started.toArray(new Listening.AfterStart[0])),
+                joined(afterFinish, finished.toArray(new Listening.AfterFinish[0])),
+                joined(afterStop, stopped.toArray(new Listening.AfterStop[0])));
+    }
+
+    public boolean isEmpty() {
+        return beforeStart.length == 0 && afterStart.length == 0 && afterFinish.length == 0 && afterStop.length == 0;
+    }
+
+    /**
+     * @return distinct listeners of all hooks in order of the hooks
+     */
+    List<Object> all() {
+        List<Object> all = new ArrayList<>();
+        for (Object[] hook : new Object[][]{beforeStart, afterStart, afterFinish, afterStop}) {
+            for (Object listener : hook) {
+                if (all.stream().noneMatch(l -> l == listener)) {
+                    all.add(listener);
+                }
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public void beforeStart(ProcessExecutor executor) {
+        for (Listening.BeforeStart listener : beforeStart) {
+            listener.run(executor);
+        }
+    }
+
+    @Override
+    public void afterStart(Process process, ProcessExecutor executor) {
+        for (Listening.AfterStart listener : afterStart) {
+            listener.run(process, executor);
+        }
+    }
+
+    @Override
+    public void afterFinish(Process process, ProcessResult result) {
+        for (Listening.AfterFinish listener : afterFinish) {
+            listener.run(process, result);
+        }
+    }
+
+    @Override
+    public void afterStop(Process process) {
+        for (Listening.AfterStop listener : afterStop) {
+            listener.run(process);
+        }
+    }
+
+    private static <T> T[] joined(T[] first, T[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        T[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
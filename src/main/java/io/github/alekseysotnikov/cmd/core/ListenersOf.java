@@ -0,0 +1,48 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.listener.CompositeProcessListener;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listeners added to zt-exec's executor, which zt-exec does not expose. Listeners of a template are listed
+ * one by one instead of the {@link Listeners} holding them
+ */
+public final class ListenersOf {
+    private static final Field LISTENERS = field(ProcessExecutor.class, "listeners");
+    private static final Field CHILDREN = field(CompositeProcessListener.class, "children");
+    private final ProcessExecutor executor;
+
+    public ListenersOf(ProcessExecutor executor) {
+        this.executor = executor;
+    }
+
+    public List<Object> value() {
+        List<Object> listeners = new ArrayList<>();
+        try {
+            for (Object listener : (List<?>) CHILDREN.get(LISTENERS.get(executor))) {
+                if (listener instanceof Listeners) {
+                    listeners.addAll(((Listeners) listener).all());
+                } else {
+                    listeners.add(listener);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Listeners of " + executor + " are not accessible", e);
+        }
+        return listeners;
+    }
+
+    private static Field field(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported zt-exec version, " + name + " of " + type + " is not found", e);
+        }
+    }
+}
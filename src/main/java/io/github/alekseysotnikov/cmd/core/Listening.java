@@ -32,4 +32,13 @@ public interface Listening {
     interface BeforeStart {
         void run(ProcessExecutor executor);
     }
+
+    /**
+     * Called on a listener added to the executor when starting the process threw, after its
+     * {@link ProcessListener#beforeStart(ProcessExecutor)} and on the same thread, also when the start threw
+     * later on, so release only what is still held for this thread
+     */
+    interface StartFailed {
+        void run(ProcessExecutor executor);
+    }
 }
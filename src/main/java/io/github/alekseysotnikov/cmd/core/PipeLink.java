@@ -0,0 +1,36 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Input of a pipeline stage for zt-exec to pump from. It gives no data and ends once released, which keeps the JVM's
+ * end of the stage's input pipe open until the previous stage has started writing into it
+ */
+final class PipeLink extends InputStream {
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    void release() {
+        released.countDown();
+    }
+
+    @Override
+    public int read() {
+        try {
+            released.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        return read();
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
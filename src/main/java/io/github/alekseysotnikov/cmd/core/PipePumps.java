@@ -0,0 +1,61 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.zeroturnaround.exec.stream.PumpStreamHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Pumps the output of a pipeline stage into the input of the next stage, where the OS can not connect them itself.
+ * When the next stage stops reading, the output is closed, so the stage gets a broken pipe as in a shell
+ */
+final class PipePumps extends PumpStreamHandler {
+    private final Process next;
+
+    PipePumps(PumpStreamHandler pumps, Process next) {
+        super(NullOutputStream.NULL_OUTPUT_STREAM, pumps.getErr(), pumps.getInput());
+        this.next = next;
+    }
+
+    @Override
+    protected void createProcessOutputPump(InputStream is, OutputStream os) {
+        outputThread = createPump(is, new NextInput(is, next.getOutputStream()), false, true);
+    }
+
+    private static final class NextInput extends OutputStream {
+        private final InputStream output;
+        private final OutputStream input;
+
+        NextInput(InputStream output, OutputStream input) {
+            this.output = output;
+            this.input = input;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                input.write(b, off, len);
+            } catch (IOException e) {
+                output.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            try {
+                input.flush();
+            } catch (IOException e) {
+                output.close();
+                throw e;
+            }
+        }
+    }
+}
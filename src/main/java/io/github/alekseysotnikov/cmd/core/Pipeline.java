@@ -0,0 +1,289 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import io.github.alekseysotnikov.cmd.listeners.Ring;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+import org.zeroturnaround.exec.listener.ProcessListener;
+import org.zeroturnaround.exec.stream.ExecuteStreamHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Commands connected output to input like {@code cmd1 | cmd2 | cmd3}. Every stage is started by its own executor,
+ * so its configuring and listeners work as usual, and keeps the last 64 KB of its own error output. Input of the
+ * first stage and output of the last one are configured as for a single command.
+ * <p>
+ * Where there is {@code mkfifo}, neighbouring stages are connected by a named pipe of the OS, created in a temporary
+ * directory and unlinked once the stages started, so the data never passes through the JVM. A stage which exits
+ * early closes its end of the pipe as in a shell, the previous stage gets a broken pipe then.
+ * Elsewhere the output is pumped into the next stage by zt-exec, and output of the stage is not read then
+ */
+public final class Pipeline {
+    private static final boolean NATIVE = File.separatorChar == '/';
+    private static final int ERROR_BYTES = 64 * 1024;
+    private static final Field READ_OUTPUT = readOutputField();
+    private final List<ProcessExecutor> stages;
+    private final boolean natively;
+
+    /**
+     * @param stages commands made by {@link ICmd#command(String...)}
+     */
+    public Pipeline(Command... stages) {
+        this(Arrays.asList(stages), NATIVE);
+    }
+
+    Pipeline(List<Command> stages, boolean natively) {
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("Pipeline needs at least one command");
+        }
+        this.stages = new ArrayList<>(stages.size());
+        for (Command stage : stages) {
+            if (!(stage instanceof BaseCommand)) {
+                throw new IllegalArgumentException("Only commands made by ICmd can be piped, but got " + stage);
+            }
+            this.stages.add(((BaseCommand) stage).executor());
+        }
+        this.natively = natively;
+    }
+
+    /**
+     * Start all stages and wait for all of them
+     *
+     * @return results of the stages in their order
+     */
+    public List<StageResult> execute() throws IOException, InterruptedException {
+        final int size = stages.size();
+        final Ring[] errors = new Ring[size];
+        final StartedProcess[] started = start(errors);
+        final List<StageResult> results = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                ProcessResult result = started[i].getFuture().get();
+                results.add(new StageResult(
+                        result.getExitValue(), result.hasOutput() ? result.getOutput() : null, errors[i].bytes()));
+            }
+        } catch (ExecutionException e) {
+            cancel(started);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Pipeline stage failed", e.getCause());
+        } catch (InterruptedException e) {
+            cancel(started);
+            throw e;
+        }
+        return results;
+    }
+
+    private StartedProcess[] start(Ring[] errors) throws IOException {
+        final int last = stages.size() - 1;
+        final StartedProcess[] started = new StartedProcess[stages.size()];
+        final File[] fifos = natively ? fifos(last) : null;
+        final RandomAccessFile[] held = new RandomAccessFile[last];
+        final PipeLink[] links = new PipeLink[last];
+        for (int i = 0; i < last; i++) {
+            links[i] = new PipeLink();
+        }
+        try {
+            if (fifos != null) {
+                // opened for both reading and writing, so opening either end by a stage does not block
+                for (int i = 0; i < last; i++) {
+                    held[i] = new RandomAccessFile(fifos[i], "rw");
+                }
+            }
+            for (int i = last; i >= 0; i--) {
+                errors[i] = new Ring(ERROR_BYTES);
+                if (fifos != null) {
+                    started[i] = start(stages.get(i), errors[i],
+                            i > 0 ? fifos[i - 1] : null, i < last ? fifos[i] : null);
+                } else {
+                    started[i] = start(stages.get(i), errors[i],
+                            i > 0 ? links[i - 1] : null, i < last ? links[i] : null,
+                            i < last ? started[i + 1].getProcess() : null);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (PipeLink link : links) {
+                link.release();
+            }
+            cancel(started);
+            throw e;
+        } finally {
+            close(held);
+            delete(fifos);
+        }
+        return started;
+    }
+
+    /**
+     * Start one stage connected to its neighbours by named pipes, and restore the executor as it was
+     *
+     * @param executor
+     * @param error    keeps the error output
+     * @param input    pipe from the previous stage or null for the first stage
+     * @param output   pipe to the next stage or null for the last stage
+     */
+    private static StartedProcess start(ProcessExecutor executor, Ring error, File input, File output)
+            throws IOException {
+        final ProcessBuilder builder = new ProcessBuilderOf(executor).value();
+        final ExecuteStreamHandler streams = executor.streams();
+        final ProcessBuilder.Redirect in = builder.redirectInput();
+        final ProcessBuilder.Redirect out = builder.redirectOutput();
+        final boolean mergeError = builder.redirectErrorStream();
+        final ProcessListener wiring = new ProcessListenerAdapter((Listening.BeforeStart) e -> {
+            e.redirectErrorAlsoTo(error);
+            if (input != null) {
+                builder.redirectInput(ProcessBuilder.Redirect.from(input));
+            }
+            if (output != null) {
+                builder.redirectOutput(ProcessBuilder.Redirect.to(output));
+            }
+        });
+        try {
+            return executor.addListener(wiring).start();
+        } finally {
+            executor.removeListener(wiring);
+            executor.streams(streams);
+            builder.redirectInput(in);
+            builder.redirectOutput(out);
+            builder.redirectErrorStream(mergeError);
+        }
+    }
+
+    /**
+     * Start one stage with its output pumped into the next stage, and restore the executor as it was
+     *
+     * @param executor
+     * @param error    keeps the error output
+     * @param input    link from the previous stage or null for the first stage
+     * @param output   link to the next stage or null for the last stage
+     * @param next     next stage or null for the last stage
+     */
+    private static StartedProcess start(ProcessExecutor executor, Ring error,
+                                        PipeLink input, PipeLink output, Process next) throws IOException {
+        final ProcessBuilder builder = new ProcessBuilderOf(executor).value();
+        final ExecuteStreamHandler streams = executor.streams();
+        final boolean mergeError = builder.redirectErrorStream();
+        final boolean readOutput = readOutput(executor);
+        final ProcessListener wiring = new ProcessListenerAdapter(
+                e -> {
+                    e.redirectErrorAlsoTo(error);
+                    if (input != null) {
+                        e.redirectInput(input);
+                    }
+                    if (next != null) {
+                        e.readOutput(false).streams(new PipePumps(e.pumps(), next));
+                    }
+                },
+                (p, e) -> {/*nothing*/},
+                (p, r) -> {/*nothing*/},
+                p -> {
+                    if (output != null) {
+                        output.release();
+                    }
+                });
+        try {
+            return executor.addListener(wiring).start();
+        } finally {
+            executor.removeListener(wiring);
+            executor.readOutput(readOutput);
+            executor.streams(streams);
+            builder.redirectErrorStream(mergeError);
+        }
+    }
+
+    /**
+     * @param count number of named pipes
+     * @return named pipes in a new temporary directory or null if they can not be created
+     */
+    private static File[] fifos(int count) throws IOException {
+        if (count == 0) {
+            return new File[0];
+        }
+        final File dir = Files.createTempDirectory("pipeline").toFile();
+        final File[] fifos = new File[count];
+        final List<String> command = new ArrayList<>(count + 1);
+        command.add("mkfifo");
+        for (int i = 0; i < count; i++) {
+            fifos[i] = new File(dir, String.valueOf(i));
+            command.add(fifos[i].getPath());
+        }
+        try {
+            if (new ProcessBuilder(command).redirectErrorStream(true).start().waitFor() == 0) {
+                return fifos;
+            }
+        } catch (IOException e) {
+            // no mkfifo, the stages are pumped by the JVM
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            delete(fifos);
+            throw new IOException("Interrupted while creating pipes in " + dir, e);
+        }
+        delete(fifos);
+        return null;
+    }
+
+    private static void close(RandomAccessFile[] held) throws IOException {
+        IOException failure = null;
+        for (RandomAccessFile file : held) {
+            try {
+                if (file != null) {
+                    file.close();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void delete(File[] fifos) {
+        if (fifos == null || fifos.length == 0) {
+            return;
+        }
+        for (File fifo : fifos) {
+            fifo.delete();
+        }
+        fifos[0].getParentFile().delete();
+    }
+
+    private static boolean readOutput(ProcessExecutor executor) {
+        try {
+            return READ_OUTPUT.getBoolean(executor);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Output reading of " + executor + " is not accessible", e);
+        }
+    }
+
+    private static Field readOutputField() {
+        try {
+            Field field = ProcessExecutor.class.getDeclaredField("readOutput");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported zt-exec version, output reading is not found", e);
+        }
+    }
+
+    private static void cancel(StartedProcess[] started) {
+        for (StartedProcess process : started) {
+            if (process != null) {
+                process.getFuture().cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessExecutor;
+
+import java.lang.reflect.Field;
+
+/**
+ * The {@link ProcessBuilder} behind zt-exec's executor, which zt-exec does not expose
+ */
+public final class ProcessBuilderOf {
+    private static final Field BUILDER = builderField();
+    private final ProcessExecutor executor;
+
+    public ProcessBuilderOf(ProcessExecutor executor) {
+        this.executor = executor;
+    }
+
+    public ProcessBuilder value() {
+        try {
+            return (ProcessBuilder) BUILDER.get(executor);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Process builder of " + executor + " is not accessible", e);
+        }
+    }
+
+    private static Field builderField() {
+        try {
+            Field field = ProcessExecutor.class.getDeclaredField("builder");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported zt-exec version, process builder is not found", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.stream.ExecuteStreamHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Keeps the standard streams of the process open and unpumped, so the caller talks to the process directly.
+ * Use one instance per started process, {@code readOutput(true)} is not supported with it
+ */
+public final class RawStreams implements ExecuteStreamHandler {
+    private volatile OutputStream input;
+    private volatile InputStream output;
+    private volatile InputStream error;
+
+    @Override
+    public void setProcessInputStream(OutputStream os) {
+        this.input = os;
+    }
+
+    @Override
+    public void setProcessErrorStream(InputStream is) {
+        this.error = is;
+    }
+
+    @Override
+    public void setProcessOutputStream(InputStream is) {
+        this.output = is;
+    }
+
+    @Override
+    public void start() {
+        // nothing to pump
+    }
+
+    /**
+     * Close the streams of the stopped process
+     */
+    @Override
+    public void stop() {
+        closeQuietly(input);
+        closeQuietly(output);
+        closeQuietly(error);
+    }
+
+    /**
+     * @return standard input of the process
+     */
+    public OutputStream input() {
+        return input;
+    }
+
+    /**
+     * @return standard output of the process
+     */
+    public InputStream output() {
+        return output;
+    }
+
+    /**
+     * @return standard error of the process, null if it is merged into the output
+     */
+    public InputStream error() {
+        return error;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // the process is gone anyway
+        }
+    }
+}
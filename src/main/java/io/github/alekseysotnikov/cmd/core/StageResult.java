@@ -0,0 +1,26 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import org.zeroturnaround.exec.ProcessOutput;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exit code, output, if the stage was configured to read it, and error output of one stage of a {@link Pipeline}
+ */
+public final class StageResult extends ProcessResult {
+    private final byte[] error;
+
+    public StageResult(int exitCode, ProcessOutput output, byte[] error) {
+        super(exitCode, output);
+        this.error = error;
+    }
+
+    public byte[] error() {
+        return error;
+    }
+
+    public String errorUTF8() {
+        return new String(error, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.alekseysotnikov.cmd.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads on JDK 21+ and daemon platform threads otherwise. The JDK API is looked up reflectively,
+ * so the project still builds and runs on Java 8
+ */
+public final class VirtualThreads implements ThreadFactory {
+    private static final ThreadFactory VIRTUAL = virtual();
+
+    /**
+     * @return true if the threads are virtual indeed
+     */
+    public boolean supported() {
+        return VIRTUAL != null;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        if (VIRTUAL != null) {
+            return VIRTUAL.newThread(task);
+        }
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static ThreadFactory virtual() {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builder.getMethod("name", String.class, long.class);
+            return (ThreadFactory) builder.getMethod("factory").invoke(name.invoke(virtual, "Cmd-virtual-", 0L));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessListenerAdapter;
+import org.zeroturnaround.exec.ProcessExecutor;
+
+import java.beans.ConstructorProperties;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Places every process into a cgroup v2 of its own, created under the cgroup of the JVM or the given one.
+ * The command is started through {@code sh}, which joins the cgroup before it execs the command,
+ * so neither the process nor its children run a single instruction outside of it. CPU, memory and pids limits
+ * need their controllers delegated to the parent, they are enabled for its children, and the processes of the JVM's
+ * own cgroup are moved into its leaf {@code cmd-jvm} for that if needed. A limit which can not be applied fails
+ * the start with {@link IllegalStateException}. Usage is readable from {@link Listening.AfterFinish}
+ * and {@link Listening.AfterStop} listeners through {@link #usage(Process)}. The cgroup is killed and removed
+ * after the process stopped. Without a writable cgroup v2 hierarchy the listener does nothing.
+ * Listeners looking at the command line, e.g. {@link Metrics}, have to be configured before it
+ */
+public final class Cgroup implements Listening.BeforeStart {
+    private static final Path PARENT = parent();
+    private static final String JOIN = "echo $$ > \"$0\" && exec \"$@\"";
+    private final Path parent;
+    private final double cpus;
+    private final long memory;
+    private final int pids;
+    private final Map<Process, Path> groups = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<Process, Usage> usages = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Cgroups under the cgroup of the JVM, no limits
+     */
+    public Cgroup() {
+        this(PARENT == null ? null : PARENT.toFile());
+    }
+
+    /**
+     * @param parent delegated cgroup to create the cgroups in, null to do nothing
+     */
+    public Cgroup(File parent) {
+        this(parent == null ? null : parent.toPath(), 0, 0, 0);
+    }
+
+    private Cgroup(Path parent, double cpus, long memory, int pids) {
+        this.parent = parent;
+        this.cpus = cpus;
+        this.memory = memory;
+        this.pids = pids;
+    }
+
+    /**
+     * @param cpus max number of CPUs the process and its children may keep busy
+     */
+    public Cgroup cpus(double cpus) {
+        return new Cgroup(parent, cpus, memory, pids);
+    }
+
+    /**
+     * @param bytes max memory of the process and its children, they are killed by the OOM killer above it
+     */
+    public Cgroup memory(long bytes) {
+        return new Cgroup(parent, cpus, bytes, pids);
+    }
+
+    /**
+     * @param pids max number of processes and threads
+     */
+    public Cgroup pids(int pids) {
+        return new Cgroup(parent, cpus, memory, pids);
+    }
+
+    /**
+     * @return true if cgroups are created for the processes
+     */
+    public boolean available() {
+        return parent != null && Files.isWritable(parent.resolve("cgroup.procs"));
+    }
+
+    @Override
+    public void run(ProcessExecutor processExecutor) {
+        if (!available()) {
+            return;
+        }
+        final Path group = parent.resolve("cmd-" + UUID.randomUUID());
+        processExecutor.addListener(new ProcessListenerAdapter(
+                executor -> {
+                    if (created(group)) {
+                        List<String> command = new ArrayList<>(Arrays.asList(
+                                "/bin/sh", "-c", JOIN, group.resolve("cgroup.procs").toString()));
+                        command.addAll(executor.getCommand());
+                        executor.command(command);
+                    }
+                },
+                (process, executor) -> groups.put(process, group),
+                (process, result) -> usages.put(process, Usage.of(group)),
+                process -> {
+                    usages.computeIfAbsent(process, p -> Usage.of(group));
+                    removed(group);
+                    groups.remove(process);
+                }));
+    }
+
+    /**
+     * @param process
+     * @return usage of the process and its children, as of its finish if it finished already, null for unknown ones
+     */
+    public Usage usage(Process process) {
+        Usage usage = usages.get(process);
+        if (usage != null) {
+            return usage;
+        }
+        Path group = groups.get(process);
+        return group == null ? null : Usage.of(group);
+    }
+
+    /**
+     * @throws IllegalStateException if a limit can not be applied, the cgroup is removed then
+     */
+    private boolean created(Path group) {
+        List<String> controllers = controllers();
+        if (!controllers.isEmpty()) {
+            enable(controllers);
+        }
+        try {
+            Files.createDirectory(group);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            if (cpus > 0) {
+                limit(group.resolve("cpu.max"), Math.round(cpus * 100_000) + " 100000");
+            }
+            if (memory > 0) {
+                limit(group.resolve("memory.max"), String.valueOf(memory));
+            }
+            if (pids > 0) {
+                limit(group.resolve("pids.max"), String.valueOf(pids));
+            }
+        } catch (IllegalStateException e) {
+            removed(group);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * @return controllers of the requested limits
+     */
+    private List<String> controllers() {
+        List<String> controllers = new ArrayList<>(3);
+        if (cpus > 0) {
+            controllers.add("cpu");
+        }
+        if (memory > 0) {
+            controllers.add("memory");
+        }
+        if (pids > 0) {
+            controllers.add("pids");
+        }
+        return controllers;
+    }
+
+    /**
+     * Enable the controllers for the children of the parent. A non-root cgroup with processes in it can not
+     * hand controllers down, so if it is the cgroup of the JVM its processes are moved into a leaf cgroup first
+     */
+    private void enable(List<String> controllers) {
+        synchronized (Cgroup.class) {
+            List<String> enabled = words(parent.resolve("cgroup.subtree_control"));
+            if (enabled.containsAll(controllers)) {
+                return;
+            }
+            List<String> available = words(parent.resolve("cgroup.controllers"));
+            if (!available.containsAll(controllers)) {
+                throw new IllegalStateException("Controllers " + controllers + " are not delegated to "
+                        + parent + ", only " + available + " are");
+            }
+            if (Files.exists(parent.resolve("cgroup.type")) && parent.equals(PARENT)) {
+                Path leaf = parent.resolve("cmd-jvm");
+                try {
+                    if (!Files.isDirectory(leaf)) {
+                        Files.createDirectory(leaf);
+                    }
+                    for (String pid : words(parent.resolve("cgroup.procs"))) {
+                        write(leaf.resolve("cgroup.procs"), pid);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Processes of " + parent + " can not be moved into " + leaf, e);
+                }
+            }
+            StringBuilder enabling = new StringBuilder();
+            for (String controller : controllers) {
+                enabling.append('+').append(controller).append(' ');
+            }
+            try {
+                write(parent.resolve("cgroup.subtree_control"), enabling.toString().trim());
+            } catch (IOException e) {
+                throw new IllegalStateException("Controllers " + controllers + " can not be enabled in " + parent, e);
+            }
+        }
+    }
+
+    /**
+     * Kill whatever the process left behind, the cgroup can be removed only when it is empty
+     */
+    private static void removed(Path group) {
+        try {
+            write(group.resolve("cgroup.kill"), "1");
+        } catch (IOException e) {
+            // kernels before 5.14 have no cgroup.kill, the process is gone anyway
+        }
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try {
+                Files.deleteIfExists(group);
+                return;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void limit(Path file, String value) {
+        try {
+            write(file, value);
+        } catch (IOException e) {
+            throw new IllegalStateException("Limit " + value + " can not be written into " + file, e);
+        }
+    }
+
+    private static void write(Path file, String value) throws IOException {
+        Files.write(file, value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static List<String> words(Path file) {
+        try {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+            return content.isEmpty() ? Collections.emptyList() : Arrays.asList(content.split("\\s+"));
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Cgroup of the JVM in the cgroup v2 hierarchy, null if there is none
+     */
+    private static Path parent() {
+        try {
+            String mount = null;
+            for (String line : Files.readAllLines(Paths.get("/proc/self/mountinfo"))) {
+                String[] fields = line.split(" ");
+                int separator = Arrays.asList(fields).indexOf("-");
+                if (separator > 0 && separator + 1 < fields.length && "cgroup2".equals(fields[separator + 1])) {
+                    mount = fields[4];
+                }
+            }
+            if (mount == null) {
+                return null;
+            }
+            for (String line : Files.readAllLines(Paths.get("/proc/self/cgroup"))) {
+                if (line.startsWith("0::")) {
+                    return Paths.get(mount, line.substring(3));
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resources used by the processes of a cgroup, -1 for the ones the kernel does not account
+     */
+    public static final class Usage {
+        private final long peakMemory;
+        private final long cpuNanos;
+        private final long readBytes;
+        private final long writtenBytes;
+
+        @ConstructorProperties({"peakMemory", "cpuNanos", "readBytes", "writtenBytes"})
+        public Usage(long peakMemory, long cpuNanos, long readBytes, long writtenBytes) {
+            this.peakMemory = peakMemory;
+            this.cpuNanos = cpuNanos;
+            this.readBytes = readBytes;
+            this.writtenBytes = writtenBytes;
+        }
+
+        static Usage of(Path group) {
+            long peak = number(group.resolve("memory.peak"));
+            long cpu = stat(group.resolve("cpu.stat"), "usage_usec");
+            long read = -1;
+            long written = -1;
+            try {
+                List<String> lines = Files.readAllLines(group.resolve("io.stat"));
+                read = 0;
+                written = 0;
+                for (String line : lines) {
+                    read += field(line, "rbytes=");
+                    written += field(line, "wbytes=");
+                }
+            } catch (IOException e) {
+                // io controller is not available
+            }
+            return new Usage(peak, cpu < 0 ? -1 : cpu * 1000, read, written);
+        }
+
+        public long getPeakMemory() {
+            return peakMemory;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getReadBytes() {
+            return readBytes;
+        }
+
+        public long getWrittenBytes() {
+            return writtenBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "peakMemory=" + peakMemory + ", cpuNanos=" + cpuNanos
+                    + ", readBytes=" + readBytes + ", writtenBytes=" + writtenBytes;
+        }
+
+        private static long field(String line, String key) {
+            for (String field : line.split(" ")) {
+                if (field.startsWith(key)) {
+                    try {
+                        return Long.parseLong(field.substring(key.length()));
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+            return 0;
+        }
+
+        private static long number(Path file) {
+            try {
+                return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+            } catch (IOException | NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private static long stat(Path file, String key) {
+            try {
+                for (String line : Files.readAllLines(file)) {
+                    if (line.startsWith(key + " ")) {
+                        return Long.parseLong(line.substring(key.length() + 1).trim());
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // controller is not available
+            }
+            return -1;
+        }
+    }
+}
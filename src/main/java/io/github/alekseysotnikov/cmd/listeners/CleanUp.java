@@ -8,21 +8,51 @@ import org.zeroturnaround.exec.ProcessExecutor;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Deletes work directory after process stopped
+ * Deletes work directory after process stopped, either right away or in a background {@link Reaper}.
+ * Work directory is tracked per started process, so one instance serves any number of concurrent commands
  */
 public final class CleanUp implements Listening.BeforeStart, Listening.AfterStop {
-    private File dir;
+    private final Reaper reaper;
+    private final Map<Process, File> dirs = new ConcurrentHashMap<>();
+
+    public CleanUp() {
+        this(null);
+    }
+
+    /**
+     * @param reaper deletes the directory in the background, null means delete it on the stop of the process
+     */
+    public CleanUp(Reaper reaper) {
+        this.reaper = reaper;
+    }
 
     @Override
     public void run(ProcessExecutor processExecutor) {
-        dir = processExecutor.getDirectory();
-        processExecutor.addListener(new ProcessListenerAdapter((Listening.AfterStop) this));
+        final File dir = processExecutor.getDirectory();
+        if (dir == null) {
+            return;
+        }
+        processExecutor.addListener(new ProcessListenerAdapter(
+                executor -> {/*nothing*/},
+                (process, executor) -> dirs.put(process, dir),
+                (process, result) -> {/*nothing*/},
+                this));
     }
 
     @Override
     public void run(Process process) {
+        File dir = dirs.remove(process);
+        if (dir == null) {
+            return;
+        }
+        if (reaper != null) {
+            reaper.reap(dir);
+            return;
+        }
         try {
             FileUtils.deleteDirectory(dir);
         } catch (IOException e) {
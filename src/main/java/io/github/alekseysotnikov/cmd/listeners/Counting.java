@@ -0,0 +1,29 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.io.OutputStream;
+
+/**
+ * Counts bytes written by a pumping thread and notes when the first one came
+ */
+final class Counting extends OutputStream {
+    volatile long bytes;
+    volatile long firstByte;
+
+    void reset() {
+        bytes = 0;
+        firstByte = Long.MAX_VALUE;
+    }
+
+    @Override
+    public void write(int b) {
+        write(null, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (firstByte == Long.MAX_VALUE) {
+            firstByte = System.nanoTime();
+        }
+        bytes += len;
+    }
+}
@@ -0,0 +1,344 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ListenersOf;
+import io.github.alekseysotnikov.cmd.core.ProcessBuilderOf;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.listener.ProcessListener;
+import org.zeroturnaround.exec.stream.ExecuteStreamHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records every execution, see {@link JournalEntry}, into an append-only log of memory mapped segments
+ * of fixed-size binary records, only the newest segments are kept. A stopped process hands its record over
+ * to the single writer thread through a preallocated ring of slots without locks, the record is dropped
+ * if the ring is full, so the journal never holds a process up. Read the log with {@link JournalReader}
+ */
+public final class Journal implements Listening.BeforeStart, AutoCloseable {
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".bin";
+    private static final long MAX_PAUSE_NANOS = 1_000_000;
+    private final File dir;
+    private final int segmentRecords;
+    private final int segments;
+    private final ByteBuffer[] slots;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile long written;
+    private volatile IOException failure;
+    private long index;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+
+    /**
+     * 8 segments of 65536 records, 32 MB each, and 4096 slots
+     *
+     * @param dir directory of the log
+     */
+    public Journal(File dir) throws IOException {
+        this(dir, 65536, 8, 4096);
+    }
+
+    /**
+     * @param dir            directory of the log
+     * @param segmentRecords records per segment
+     * @param segments       max number of segments kept
+     * @param slots          max number of records waiting for the writer
+     */
+    public Journal(File dir, int segmentRecords, int segments, int slots) throws IOException {
+        if (segmentRecords < 1 || segments < 1 || slots < 1) {
+            throw new IllegalArgumentException("Journal sizes must be positive, got "
+                    + segmentRecords + ", " + segments + " and " + slots);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + dir);
+        }
+        this.dir = dir;
+        this.segmentRecords = segmentRecords;
+        this.segments = segments;
+        byte[] ring = new byte[slots * JournalEntry.RECORD];
+        this.slots = new ByteBuffer[slots];
+        for (int i = 0; i < slots; i++) {
+            this.slots[i] = ByteBuffer.wrap(ring, i * JournalEntry.RECORD, JournalEntry.RECORD).slice();
+        }
+        this.published = new AtomicLongArray(slots);
+        File[] existing = segments(dir);
+        this.index = existing.length == 0 ? 0 : index(existing[existing.length - 1]);
+        next();
+        this.writer = new Thread(this::write, "Journal-" + dir.getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void run(ProcessExecutor processExecutor) {
+        processExecutor.addListener(new Execution());
+    }
+
+    /**
+     * @return number of records in the log
+     */
+    public long written() {
+        return written;
+    }
+
+    /**
+     * @return number of records dropped, since the ring was full, the log failed or the journal was closed
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Write the records handed over so far and close the log. Records of processes stopping meanwhile may be lost
+     *
+     * @throws IOException if the log failed before
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        closed = true;
+        writer.join();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @param dir directory of a log
+     * @return segments of the log from the oldest one
+     */
+    static File[] segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(index(a), index(b)));
+        return files;
+    }
+
+    private static long index(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void record(JournalEntry entry) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) (sequence % slots.length);
+        entry.write(slots[slot]);
+        published.set(slot, sequence + 1);
+    }
+
+    private void write() {
+        long pause = 0;
+        while (true) {
+            long next = consumed.get();
+            int slot = (int) (next % slots.length);
+            if (published.get(slot) == next + 1) {
+                append(slots[slot]);
+                consumed.set(next + 1);
+                pause = 0;
+            } else if (closed && next == claimed.get()) {
+                break;
+            } else if (pause == 0) {
+                pause = 1_000;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(pause);
+                pause = Math.min(pause * 2, MAX_PAUSE_NANOS);
+            }
+        }
+        try {
+            finish();
+        } catch (IOException e) {
+            failure = failure == null ? e : failure;
+        }
+    }
+
+    private void append(ByteBuffer record) {
+        if (failure != null) {
+            dropped.increment();
+            return;
+        }
+        try {
+            if (segment.remaining() < JournalEntry.RECORD) {
+                finish();
+                next();
+            }
+            segment.put(record.array(), record.arrayOffset(), JournalEntry.RECORD);
+            written++;
+        } catch (IOException e) {
+            failure = e;
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Open the next segment and delete the oldest ones over the limit
+     */
+    private void next() throws IOException {
+        index++;
+        File file = new File(dir, String.format("%s%016d%s", PREFIX, index, SUFFIX));
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * JournalEntry.RECORD);
+        File[] existing = segments(dir);
+        for (int i = 0; i < existing.length - segments; i++) {
+            if (!existing[i].delete()) {
+                throw new IOException("Cannot delete journal segment " + existing[i]);
+            }
+        }
+    }
+
+    /**
+     * Cut the unwritten tail off the segment and close it
+     */
+    private void finish() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        long size = segment.position();
+        segment.force();
+        segment = null;
+        try {
+            channel.truncate(size);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static String name(Object listener) {
+        String name = listener.getClass().getName();
+        name = name.substring(name.lastIndexOf('.') + 1);
+        int lambda = name.indexOf("$$Lambda");
+        return lambda < 0 ? name : name.substring(0, lambda);
+    }
+
+    /**
+     * Records executions of one command, the state of every execution is kept per started process
+     */
+    private final class Execution extends ProcessListener implements Listening.StartFailed {
+        private final ThreadLocal<Run> starting = new ThreadLocal<>();
+        private final Map<Process, Run> runs = new ConcurrentHashMap<>();
+
+        /**
+         * Streams are counted once all configuring is done, so the error stream is not split off by mistake.
+         * The counters are teed for this start only, the streams of the command are restored once it started
+         */
+        @Override
+        public void beforeStart(ProcessExecutor executor) {
+            List<String> names = new ArrayList<>();
+            for (Object listener : new ListenersOf(executor).value()) {
+                if (listener != this) {
+                    names.add(name(listener));
+                }
+            }
+            Run run = new Run(executor, names);
+            executor.redirectOutputAlsoTo(run.output);
+            if (!new ProcessBuilderOf(executor).value().redirectErrorStream()) {
+                executor.redirectErrorAlsoTo(run.error);
+            }
+            starting.set(run);
+        }
+
+        @Override
+        public void afterStart(Process process, ProcessExecutor executor) {
+            Run run = starting.get();
+            starting.remove();
+            if (run == null) {
+                return;
+            }
+            run.spawn = System.nanoTime() - run.started;
+            executor.streams(run.streams);
+            runs.put(process, run);
+        }
+
+        @Override
+        public void afterFinish(Process process, ProcessResult result) {
+            Run run = runs.get(process);
+            if (run != null) {
+                run.exitCode = result.getExitValue();
+            }
+        }
+
+        @Override
+        public void afterStop(Process process) {
+            Run run = runs.remove(process);
+            if (run == null) {
+                return;
+            }
+            long firstByte = Math.min(run.output.firstByte, run.error.firstByte);
+            record(new JournalEntry(run.commandLine, run.workDir, run.listeners, run.startMillis, run.spawn,
+                    firstByte == Long.MAX_VALUE ? -1 : firstByte - run.started, System.nanoTime() - run.started,
+                    run.exitCode, run.output.bytes, run.error.bytes, false));
+        }
+
+        /**
+         * Nothing is recorded for a process which did not start
+         */
+        @Override
+        public void run(ProcessExecutor executor) {
+            Run run = starting.get();
+            starting.remove();
+            if (run != null) {
+                executor.streams(run.streams);
+            }
+        }
+    }
+
+    /**
+     * State of one execution
+     */
+    private static final class Run {
+        private final Counting output = new Counting();
+        private final Counting error = new Counting();
+        private final ExecuteStreamHandler streams;
+        private final List<String> commandLine;
+        private final String workDir;
+        private final List<String> listeners;
+        private final long startMillis = System.currentTimeMillis();
+        private final long started = System.nanoTime();
+        private volatile long spawn;
+        private volatile int exitCode = JournalEntry.UNKNOWN_EXIT_CODE;
+
+        Run(ProcessExecutor executor, List<String> listeners) {
+            this.streams = executor.streams();
+            this.commandLine = new ArrayList<>(executor.getCommand());
+            this.workDir = executor.getDirectory() == null ? "" : executor.getDirectory().getPath();
+            this.listeners = listeners;
+            output.reset();
+            error.reset();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One execution recorded by a {@link Journal}. It takes a fixed-size binary record, the command line,
+ * the work directory and the listener names are cut when they do not fit, see {@link #truncated()}
+ */
+public final class JournalEntry {
+    /**
+     * Exit code of a process which did not finish normally, e.g. timed out
+     */
+    public static final int UNKNOWN_EXIT_CODE = Integer.MIN_VALUE;
+    static final int RECORD = 512;
+    private static final int MAGIC = 0x434D444A;
+    private static final int COMMAND = 64;
+    private static final int COMMAND_BYTES = 320;
+    private static final int DIR = COMMAND + COMMAND_BYTES;
+    private static final int DIR_BYTES = 64;
+    private static final int LISTENERS = DIR + DIR_BYTES;
+    private static final int LISTENERS_BYTES = RECORD - LISTENERS;
+    private final List<String> commandLine;
+    private final String workDir;
+    private final List<String> listeners;
+    private final long startMillis;
+    private final long spawnNanos;
+    private final long firstByteNanos;
+    private final long runtimeNanos;
+    private final int exitCode;
+    private final long outputBytes;
+    private final long errorBytes;
+    private final boolean truncated;
+
+    /**
+     * @param commandLine
+     * @param workDir        empty for the work directory of the JVM
+     * @param listeners      names of the listeners
+     * @param startMillis    wall clock time of the start
+     * @param spawnNanos
+     * @param firstByteNanos -1 if there was no output
+     * @param runtimeNanos
+     * @param exitCode
+     * @param outputBytes
+     * @param errorBytes
+     * @param truncated
+     */
+    public JournalEntry(List<String> commandLine, String workDir, List<String> listeners, long startMillis,
+                        long spawnNanos, long firstByteNanos, long runtimeNanos, int exitCode,
+                        long outputBytes, long errorBytes, boolean truncated) {
+        this.commandLine = Collections.unmodifiableList(new ArrayList<>(commandLine));
+        this.workDir = workDir;
+        this.listeners = Collections.unmodifiableList(new ArrayList<>(listeners));
+        this.startMillis = startMillis;
+        this.spawnNanos = spawnNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.runtimeNanos = runtimeNanos;
+        this.exitCode = exitCode;
+        this.outputBytes = outputBytes;
+        this.errorBytes = errorBytes;
+        this.truncated = truncated;
+    }
+
+    public List<String> commandLine() {
+        return commandLine;
+    }
+
+    public String workDir() {
+        return workDir;
+    }
+
+    public List<String> listeners() {
+        return listeners;
+    }
+
+    public long startMillis() {
+        return startMillis;
+    }
+
+    public long spawnNanos() {
+        return spawnNanos;
+    }
+
+    public long firstByteNanos() {
+        return firstByteNanos;
+    }
+
+    public long runtimeNanos() {
+        return runtimeNanos;
+    }
+
+    /**
+     * @return exit code or {@link #UNKNOWN_EXIT_CODE}
+     */
+    public int exitCode() {
+        return exitCode;
+    }
+
+    public long outputBytes() {
+        return outputBytes;
+    }
+
+    public long errorBytes() {
+        return errorBytes;
+    }
+
+    /**
+     * @return true if the command line, the work directory or the listener names were cut
+     */
+    public boolean truncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return "commandLine=" + commandLine + ", workDir=" + workDir + ", listeners=" + listeners
+                + ", startMillis=" + startMillis + ", spawnNanos=" + spawnNanos
+                + ", firstByteNanos=" + firstByteNanos + ", runtimeNanos=" + runtimeNanos
+                + ", exitCode=" + exitCode + ", outputBytes=" + outputBytes + ", errorBytes=" + errorBytes
+                + ", truncated=" + truncated;
+    }
+
+    /**
+     * Encode the entry into the record, which is cleared first
+     *
+     * @param record buffer of {@link #RECORD} bytes
+     */
+    void write(ByteBuffer record) {
+        Arrays.fill(record.array(), record.arrayOffset(), record.arrayOffset() + RECORD, (byte) 0);
+        boolean cut = truncated;
+        cut |= text(record, COMMAND, COMMAND_BYTES, 56, String.join("\0", commandLine));
+        cut |= text(record, DIR, DIR_BYTES, 58, workDir);
+        cut |= text(record, LISTENERS, LISTENERS_BYTES, 60, String.join(",", listeners));
+        record.putInt(0, MAGIC)
+                .putInt(4, exitCode)
+                .putLong(8, startMillis)
+                .putLong(16, spawnNanos)
+                .putLong(24, firstByteNanos)
+                .putLong(32, runtimeNanos)
+                .putLong(40, outputBytes)
+                .putLong(48, errorBytes)
+                .put(62, (byte) (cut ? 1 : 0))
+                .put(63, (byte) Math.min(listeners.size(), 255));
+    }
+
+    /**
+     * @param records buffer of records
+     * @param at      offset of the record
+     * @return decoded entry, null if there is no record, e.g. in the unwritten tail of a segment
+     */
+    static JournalEntry read(ByteBuffer records, int at) {
+        if (records.getInt(at) != MAGIC) {
+            return null;
+        }
+        String command = text(records, at + COMMAND, at + 56);
+        String listeners = text(records, at + LISTENERS, at + 60);
+        return new JournalEntry(
+                command.isEmpty() ? Collections.emptyList() : Arrays.asList(command.split("\0", -1)),
+                text(records, at + DIR, at + 58),
+                listeners.isEmpty() ? Collections.emptyList() : Arrays.asList(listeners.split(",")),
+                records.getLong(at + 8),
+                records.getLong(at + 16),
+                records.getLong(at + 24),
+                records.getLong(at + 32),
+                records.getInt(at + 4),
+                records.getLong(at + 40),
+                records.getLong(at + 48),
+                records.get(at + 62) != 0);
+    }
+
+    /**
+     * @return true if the text was cut, at a character boundary
+     */
+    private static boolean text(ByteBuffer record, int offset, int max, int lengthAt, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        if (length > max) {
+            length = max;
+            while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            record.put(offset + i, bytes[i]);
+        }
+        record.putShort(lengthAt, (short) length);
+        return length < bytes.length;
+    }
+
+    private static String text(ByteBuffer record, int offset, int lengthAt) {
+        byte[] bytes = new byte[record.getShort(lengthAt)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = record.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
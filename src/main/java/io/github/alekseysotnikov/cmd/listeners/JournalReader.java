@@ -0,0 +1,164 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Command;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Offline reader of the log written by a {@link Journal}, it summarises the executions and replays them
+ */
+public final class JournalReader {
+    private final File dir;
+
+    /**
+     * @param dir directory of the log
+     */
+    public JournalReader(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return recorded executions from the oldest one
+     */
+    public List<JournalEntry> entries() throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        for (File segment : Journal.segments(dir)) {
+            try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                for (int at = 0; at + JournalEntry.RECORD <= records.capacity(); at += JournalEntry.RECORD) {
+                    JournalEntry entry = JournalEntry.read(records, at);
+                    if (entry == null) {
+                        break;
+                    }
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @param top max number of executables in the summary
+     * @return latencies of all executions and of the most frequent executables
+     */
+    public Summary summary(int top) throws IOException {
+        Histogram spawn = new Histogram();
+        Histogram runtime = new Histogram();
+        Map<String, Histogram> executables = new HashMap<>();
+        for (JournalEntry entry : entries()) {
+            spawn.record(entry.spawnNanos());
+            runtime.record(entry.runtimeNanos());
+            String executable = entry.commandLine().isEmpty() ? "" : new File(entry.commandLine().get(0)).getName();
+            executables.computeIfAbsent(executable, e -> new Histogram()).record(entry.runtimeNanos());
+        }
+        Map<String, Histogram.Percentiles> percentiles = new HashMap<>();
+        executables.forEach((executable, histogram) -> percentiles.put(executable, histogram.percentiles()));
+        Map<String, Histogram.Percentiles> runtimes = new LinkedHashMap<>();
+        percentiles.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> -e.getValue().getCount()))
+                .limit(top)
+                .forEach(e -> runtimes.put(e.getKey(), e.getValue()));
+        return new Summary(spawn.percentiles(), runtime.percentiles(), Collections.unmodifiableMap(runtimes));
+    }
+
+    /**
+     * Start the recorded executions again keeping their pace, e.g. against stubs of the real commands
+     *
+     * @param stub  command to start instead of the recorded one
+     * @param speed how many times faster than recorded, 0 to start all at once
+     * @return nanoseconds until all the commands completed
+     * @throws IOException if a command failed
+     */
+    public long replay(Function<JournalEntry, Command> stub, double speed) throws IOException, InterruptedException {
+        List<JournalEntry> entries = entries();
+        entries.sort(Comparator.comparingLong(JournalEntry::startMillis));
+        List<CompletableFuture<?>> results = new ArrayList<>();
+        long started = System.nanoTime();
+        for (JournalEntry entry : entries) {
+            if (speed > 0) {
+                long due = started + (long) (TimeUnit.MILLISECONDS.toNanos(
+                        entry.startMillis() - entries.get(0).startMillis()) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            results.add(stub.apply(entry).async());
+        }
+        try {
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Replay of " + dir + " failed", e.getCause());
+        }
+        return System.nanoTime() - started;
+    }
+
+    /**
+     * Print the summary of the log
+     *
+     * @param args directory of the log and optionally max number of executables
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalReader <journal directory> [top executables]");
+            return;
+        }
+        System.out.println(new JournalReader(new File(args[0])).summary(args.length > 1 ? Integer.parseInt(args[1]) : 10));
+    }
+
+    /**
+     * Latencies of recorded executions in nanoseconds
+     */
+    public static final class Summary {
+        private final Histogram.Percentiles spawnLatency;
+        private final Histogram.Percentiles runtime;
+        private final Map<String, Histogram.Percentiles> executables;
+
+        public Summary(Histogram.Percentiles spawnLatency, Histogram.Percentiles runtime,
+                       Map<String, Histogram.Percentiles> executables) {
+            this.spawnLatency = spawnLatency;
+            this.runtime = runtime;
+            this.executables = executables;
+        }
+
+        public Histogram.Percentiles spawnLatency() {
+            return spawnLatency;
+        }
+
+        public Histogram.Percentiles runtime() {
+            return runtime;
+        }
+
+        /**
+         * @return runtime per executable, the most frequent first
+         */
+        public Map<String, Histogram.Percentiles> executables() {
+            return executables;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder()
+                    .append("spawnLatency={").append(spawnLatency).append("}\n")
+                    .append("runtime={").append(runtime).append("}\n");
+            executables.forEach((executable, percentiles) ->
+                    summary.append(executable).append(" runtime={").append(percentiles).append("}\n"));
+            return summary.toString();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes into regions of the file mapped into memory, so a write is a copy rather than a system call.
+ * Every region is preallocated when it is mapped, the file is cut down to the written size on close.
+ * Written bytes survive a crash of the JVM, since they are already in the page cache, but so does the zero
+ * padding up to the end of the last region, as the file is never closed then
+ */
+final class MappedFileStream extends OutputStream {
+    private final FileChannel channel;
+    private final long region;
+    private long position;
+    private MappedByteBuffer buffer;
+
+    /**
+     * @param path
+     * @param append
+     * @param region size of a mapped region
+     */
+    MappedFileStream(Path path, boolean append, long region) throws IOException {
+        this.channel = append
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.region = region;
+        this.position = append ? channel.size() : 0;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, region);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            next();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                next();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        long size = position + buffer.position();
+        buffer = null;
+        try {
+            channel.truncate(size);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void next() throws IOException {
+        position += buffer.position();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, region);
+    }
+}
@@ -0,0 +1,207 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessBuilderOf;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.listener.ProcessListener;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records spawn latency, time to the first output byte, runtime, bytes of output and error streams and exit codes
+ * of every command, grouped by executable name. Error stream merged into the output one, as zt-exec does by default,
+ * is counted as output. Snapshots are pulled with {@link #snapshots()} or through JMX
+ */
+public final class Metrics implements Listening.BeforeStart, MetricsMXBean {
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void run(ProcessExecutor processExecutor) {
+        Execution execution = new Execution();
+        processExecutor.redirectOutputAlsoTo(execution.output);
+        if (!new ProcessBuilderOf(processExecutor).value().redirectErrorStream()) {
+            processExecutor.redirectErrorAlsoTo(execution.error);
+        }
+        processExecutor.addListener(execution);
+    }
+
+    /**
+     * @return metrics grouped by executable name
+     */
+    public Map<String, Snapshot> snapshots() {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        stats.forEach((executable, s) -> snapshots.put(executable, s.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Snapshot> getSnapshots() {
+        return snapshots();
+    }
+
+    /**
+     * Expose the metrics through the platform MBean server
+     *
+     * @param name distinguishes several instances of metrics
+     * @return name of the registered MBean
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("io.github.alekseysotnikov.cmd:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    private Stats stats(ProcessExecutor executor) {
+        List<String> command = executor.getCommand();
+        String executable = command.isEmpty() ? "" : new File(command.get(0)).getName();
+        return stats.computeIfAbsent(executable, e -> new Stats());
+    }
+
+    /**
+     * Metrics of one execution, created per command
+     */
+    private final class Execution extends ProcessListener {
+        private final Counting output = new Counting();
+        private final Counting error = new Counting();
+        private volatile Stats stats;
+        private volatile long started;
+
+        @Override
+        public void beforeStart(ProcessExecutor executor) {
+            stats = stats(executor);
+            output.reset();
+            error.reset();
+            started = System.nanoTime();
+        }
+
+        @Override
+        public void afterStart(Process process, ProcessExecutor executor) {
+            stats.started.increment();
+            stats.spawn.record(System.nanoTime() - started);
+        }
+
+        @Override
+        public void afterFinish(Process process, ProcessResult result) {
+            stats.exitCodes.computeIfAbsent(result.getExitValue(), c -> new LongAdder()).increment();
+        }
+
+        @Override
+        public void afterStop(Process process) {
+            stats.runtime.record(System.nanoTime() - started);
+            stats.stopped.increment();
+            long firstByte = Math.min(output.firstByte, error.firstByte);
+            if (firstByte != Long.MAX_VALUE) {
+                stats.firstByte.record(firstByte - started);
+            }
+            stats.outputBytes.add(output.bytes);
+            stats.errorBytes.add(error.bytes);
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder started = new LongAdder();
+        private final LongAdder stopped = new LongAdder();
+        private final LongAdder outputBytes = new LongAdder();
+        private final LongAdder errorBytes = new LongAdder();
+        private final Map<Integer, LongAdder> exitCodes = new ConcurrentHashMap<>();
+        private final Histogram spawn = new Histogram();
+        private final Histogram firstByte = new Histogram();
+        private final Histogram runtime = new Histogram();
+
+        Snapshot snapshot() {
+            Map<Integer, Long> codes = new TreeMap<>();
+            exitCodes.forEach((code, count) -> codes.put(code, count.sum()));
+            return new Snapshot(
+                    started.sum(),
+                    stopped.sum(),
+                    outputBytes.sum(),
+                    errorBytes.sum(),
+                    Collections.unmodifiableMap(codes),
+                    spawn.percentiles(),
+                    firstByte.percentiles(),
+                    runtime.percentiles());
+        }
+    }
+
+    /**
+     * Immutable metrics of one executable, latencies are in nanoseconds
+     */
+    public static final class Snapshot {
+        private final long started;
+        private final long stopped;
+        private final long outputBytes;
+        private final long errorBytes;
+        private final Map<Integer, Long> exitCodes;
+        private final Histogram.Percentiles spawnLatency;
+        private final Histogram.Percentiles firstByteLatency;
+        private final Histogram.Percentiles runtime;
+
+        @ConstructorProperties({"started", "stopped", "outputBytes", "errorBytes", "exitCodes",
+                "spawnLatency", "firstByteLatency", "runtime"})
+        public Snapshot(long started, long stopped, long outputBytes, long errorBytes, Map<Integer, Long> exitCodes,
+                        Histogram.Percentiles spawnLatency, Histogram.Percentiles firstByteLatency,
+                        Histogram.Percentiles runtime) {
+            this.started = started;
+            this.stopped = stopped;
+            this.outputBytes = outputBytes;
+            this.errorBytes = errorBytes;
+            this.exitCodes = exitCodes;
+            this.spawnLatency = spawnLatency;
+            this.firstByteLatency = firstByteLatency;
+            this.runtime = runtime;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getStopped() {
+            return stopped;
+        }
+
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+
+        public long getErrorBytes() {
+            return errorBytes;
+        }
+
+        public Map<Integer, Long> getExitCodes() {
+            return exitCodes;
+        }
+
+        public Histogram.Percentiles getSpawnLatency() {
+            return spawnLatency;
+        }
+
+        public Histogram.Percentiles getFirstByteLatency() {
+            return firstByteLatency;
+        }
+
+        public Histogram.Percentiles getRuntime() {
+            return runtime;
+        }
+
+        @Override
+        public String toString() {
+            return "started=" + started + ", stopped=" + stopped
+                    + ", outputBytes=" + outputBytes + ", errorBytes=" + errorBytes
+                    + ", exitCodes=" + exitCodes
+                    + ", spawnLatency={" + spawnLatency + "}"
+                    + ", firstByteLatency={" + firstByteLatency + "}"
+                    + ", runtime={" + runtime + "}";
+        }
+    }
+}
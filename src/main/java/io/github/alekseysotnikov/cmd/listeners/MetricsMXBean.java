@@ -0,0 +1,13 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Metrics}
+ */
+public interface MetricsMXBean {
+    /**
+     * @return metrics grouped by executable name
+     */
+    Map<String, Metrics.Snapshot> getSnapshots();
+}
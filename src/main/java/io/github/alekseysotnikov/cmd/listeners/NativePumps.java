@@ -0,0 +1,32 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import org.zeroturnaround.exec.stream.PumpStreamHandler;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Pumps only the streams which the OS does not redirect by itself, so a natively redirected stream costs no thread
+ */
+final class NativePumps extends PumpStreamHandler {
+    private final ProcessBuilder builder;
+
+    NativePumps(PumpStreamHandler pumps, ProcessBuilder builder) {
+        super(pumps.getOut(), pumps.getErr(), pumps.getInput());
+        this.builder = builder;
+    }
+
+    @Override
+    protected void createProcessOutputPump(InputStream is, OutputStream os) {
+        if (builder.redirectOutput() == ProcessBuilder.Redirect.PIPE) {
+            super.createProcessOutputPump(is, os);
+        }
+    }
+
+    @Override
+    protected void createProcessErrorPump(InputStream is, OutputStream os) {
+        if (builder.redirectError() == ProcessBuilder.Redirect.PIPE) {
+            super.createProcessErrorPump(is, os);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessListenerAdapter;
+import io.github.alekseysotnikov.cmd.core.ProcessBuilderOf;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.stream.PumpStreamHandler;
+
+import java.io.File;
+
+/**
+ * Lets the OS write either output or error stream, or both of them, straight into a file within the working directory.
+ * Neither pumping threads nor copies in the JVM are involved, and there is nothing to close after the process stopped,
+ * because the parent's descriptor of the file is closed right after the process started
+ */
+public final class NativeRedirectToFile implements Listening.BeforeStart {
+    private final File outputFile;
+    private final boolean fromOutputStream;
+    private final boolean fromErrorStream;
+    private final boolean append;
+
+    public static NativeRedirectToFile fromOutputStream(String path) {
+        return new NativeRedirectToFile(new File(path), true, false, false);
+    }
+
+    public static NativeRedirectToFile fromErrorStream(String path) {
+        return new NativeRedirectToFile(new File(path), false, true, false);
+    }
+
+    /**
+     * Error stream is merged into output stream, both of them go to the file
+     */
+    public static NativeRedirectToFile fromBothStreams(String path) {
+        return new NativeRedirectToFile(new File(path), true, true, false);
+    }
+
+    public NativeRedirectToFile(File outputFile, boolean fromOutputStream, boolean fromErrorStream, boolean append) {
+        this.outputFile = outputFile;
+        this.fromOutputStream = fromOutputStream;
+        this.fromErrorStream = fromErrorStream;
+        this.append = append;
+    }
+
+    /**
+     * Append to the file instead of truncating it
+     */
+    public NativeRedirectToFile appending() {
+        return new NativeRedirectToFile(outputFile, fromOutputStream, fromErrorStream, true);
+    }
+
+    @Override
+    public void run(ProcessExecutor processExecutor) {
+        ProcessBuilder builder = new ProcessBuilderOf(processExecutor).value();
+        File file = file(processExecutor.getDirectory());
+        ProcessBuilder.Redirect redirect = append
+                ? ProcessBuilder.Redirect.appendTo(file)
+                : ProcessBuilder.Redirect.to(file);
+        if (fromOutputStream && fromErrorStream) {
+            processExecutor.redirectErrorStream(true);
+            builder.redirectOutput(redirect);
+        } else if (fromErrorStream) {
+            builder.redirectError(redirect);
+        } else {
+            builder.redirectOutput(redirect);
+        }
+        processExecutor.addListener(new ProcessListenerAdapter((Listening.BeforeStart) executor -> {
+            if (executor.streams() instanceof PumpStreamHandler
+                    && !(executor.streams() instanceof NativePumps)) {
+                executor.streams(new NativePumps(executor.pumps(), builder));
+            }
+        }));
+    }
+
+    private File file(File workDir) {
+        if (outputFile.isAbsolute() || workDir == null) {
+            return outputFile;
+        }
+        return new File(workDir, outputFile.getPath());
+    }
+}
@@ -0,0 +1,232 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes directories in batches on a background thread, so the thread waiting for a process does not pay for it.
+ * When the queue is full or the reaper is closed the directory is deleted by the caller. Failed deletions are
+ * retried after a doubling pause. Pending directories are deleted on close and, if the reaper was never closed,
+ * on JVM exit
+ */
+public final class Reaper implements AutoCloseable {
+    private static final long BACKOFF_MILLIS = 100;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final int attempts;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Thread worker;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    public Reaper() {
+        this(1024, 64, 3);
+    }
+
+    /**
+     * @param capacity  max number of directories waiting for deletion
+     * @param batchSize max number of directories deleted in one go
+     * @param attempts  how many times a directory is tried to be deleted before giving up
+     */
+    public Reaper(int capacity, int batchSize, int attempts) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.attempts = attempts;
+        this.worker = new Thread(this::work, "Reaper");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        this.shutdownHook = new Thread(this::flush, "Reaper-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Schedule the directory for deletion
+     *
+     * @param dir
+     */
+    public void reap(File dir) {
+        pending.incrementAndGet();
+        final boolean queued;
+        synchronized (queue) {
+            queued = !closed && queue.offer(new Pending(dir, 1, 0));
+        }
+        if (!queued) {
+            delete(new Pending(dir, attempts, 0));
+        }
+    }
+
+    /**
+     * @return number of directories scheduled but not deleted yet
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * @return total size of the deleted files
+     */
+    public long reclaimedBytes() {
+        return reclaimed.get();
+    }
+
+    /**
+     * @return number of directories which could not be deleted after all attempts
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Stop the background thread and delete everything still pending
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (queue) {
+            closed = true;
+        }
+        worker.join();
+        flush();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM is shutting down, the hook is running or about to run
+        }
+    }
+
+    private void work() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        List<Pending> retries = new ArrayList<>();
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Pending first = queue.poll(pause(retries), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                }
+                final long now = System.nanoTime();
+                for (Iterator<Pending> due = retries.iterator(); due.hasNext(); ) {
+                    Pending retry = due.next();
+                    if (retry.due - now <= 0) {
+                        batch.add(retry);
+                        due.remove();
+                    }
+                }
+                for (Pending dir : batch) {
+                    Pending retry = delete(dir);
+                    if (retry != null) {
+                        retries.add(retry);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Pending retry : retries) {
+            delete(new Pending(retry.dir, attempts, 0));
+        }
+    }
+
+    /**
+     * @return nanoseconds to wait for new directories before the next retry is due
+     */
+    private static long pause(List<Pending> retries) {
+        long pause = TimeUnit.MILLISECONDS.toNanos(BACKOFF_MILLIS);
+        final long now = System.nanoTime();
+        for (Pending retry : retries) {
+            pause = Math.min(pause, Math.max(0, retry.due - now));
+        }
+        return pause;
+    }
+
+    private void flush() {
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (Pending dir : rest) {
+            delete(new Pending(dir.dir, attempts, 0));
+        }
+    }
+
+    /**
+     * @return the next attempt if the directory could not be deleted and there are attempts left, else null
+     */
+    private Pending delete(Pending dir) {
+        try {
+            reclaimed.addAndGet(deleteDirectory(dir.dir.toPath()));
+            pending.decrementAndGet();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            if (dir.attempt >= attempts) {
+                failed.incrementAndGet();
+                pending.decrementAndGet();
+                return null;
+            }
+            return new Pending(dir.dir, dir.attempt + 1,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BACKOFF_MILLIS << Math.min(dir.attempt - 1, 16)));
+        }
+    }
+
+    /**
+     * @return size of the deleted files
+     */
+    private static long deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return 0;
+        }
+        final long[] size = new long[1];
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                size[0] += attrs.size();
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+
+    private static final class Pending {
+        private final File dir;
+        private final int attempt;
+        private final long due;
+
+        Pending(File dir, int attempt, long due) {
+            this.dir = dir;
+            this.attempt = attempt;
+            this.due = due;
+        }
+    }
+}
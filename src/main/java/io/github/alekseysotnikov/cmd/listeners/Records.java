@@ -0,0 +1,242 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessListenerAdapter;
+import org.zeroturnaround.exec.ProcessExecutor;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Decodes either output or error stream into records while the process is running and pushes every record
+ * to the sink as soon as it is complete. Bytes are copied once into a buffer reused for the whole stream,
+ * which grows only for a record longer than any before it, and the sink gets a view of that buffer.
+ * A record not terminated by the end of the stream is pushed when the process stopped. Records longer than
+ * {@link #atMost(int)} bytes, 16 MB by default, are dropped, so a stream without delimiters can not exhaust the heap
+ */
+public final class Records implements Listening.BeforeStart {
+    private static final int LINES = 0;
+    private static final int NUL = 1;
+    private static final int JSON = 2;
+    private static final int LENGTH_PREFIXED = 3;
+    private final int format;
+    private final Sink sink;
+    private final boolean fromErrorStream;
+    private final int maxLength;
+
+    /**
+     * Lines without the trailing '\n' or "\r\n"
+     */
+    public static Records lines(Sink sink) {
+        return new Records(LINES, sink, false);
+    }
+
+    /**
+     * Records terminated by a zero byte, e.g. the output of {@code find -print0}
+     */
+    public static Records nulDelimited(Sink sink) {
+        return new Records(NUL, sink, false);
+    }
+
+    /**
+     * Newline-delimited JSON, one value per line, blank lines are skipped. Records are the raw JSON texts,
+     * parse them with a library of your choice
+     */
+    public static Records jsonLines(Sink sink) {
+        return new Records(JSON, sink, false);
+    }
+
+    /**
+     * Records preceded by their length as a 4 bytes big-endian integer. An incomplete last record is dropped,
+     * as well as the rest of the stream after a negative length or a length over the limit
+     */
+    public static Records lengthPrefixed(Sink sink) {
+        return new Records(LENGTH_PREFIXED, sink, false);
+    }
+
+    private Records(int format, Sink sink, boolean fromErrorStream) {
+        this(format, sink, fromErrorStream, 16 * 1024 * 1024);
+    }
+
+    private Records(int format, Sink sink, boolean fromErrorStream, int maxLength) {
+        this.format = format;
+        this.sink = sink;
+        this.fromErrorStream = fromErrorStream;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Decode error stream instead of output stream
+     */
+    public Records fromErrorStream() {
+        return new Records(format, sink, true, maxLength);
+    }
+
+    /**
+     * @param maxLength longest record taken, a longer delimited record is dropped up to its delimiter,
+     *                  a longer length-prefixed record drops the rest of the stream since its frames are lost
+     */
+    public Records atMost(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Max record length " + maxLength + " is negative");
+        }
+        return new Records(format, sink, fromErrorStream, maxLength);
+    }
+
+    @Override
+    public void run(ProcessExecutor processExecutor) {
+        final Decoding decoding = new Decoding(format, sink, maxLength);
+        new RedirectTo(decoding, fromErrorStream).run(processExecutor);
+        processExecutor.addListener(new ProcessListenerAdapter((Listening.AfterStop) process -> decoding.end()));
+    }
+
+    /**
+     * Takes records, called by the thread pumping the stream
+     */
+    public interface Sink {
+        /**
+         * @param buffer buffer of the stream, valid until the method returns
+         * @param offset
+         * @param length
+         */
+        void accept(byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * @param records
+     * @return sink decoding every record as a UTF-8 string
+     */
+    public static Sink utf8(Consumer<String> records) {
+        return (buffer, offset, length) -> records.accept(new String(buffer, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decoding state of one stream
+     */
+    private static final class Decoding extends OutputStream {
+        private final int format;
+        private final Sink sink;
+        private final int maxLength;
+        private final byte[] single = new byte[1];
+        private byte[] buffer = new byte[8192];
+        private int size;
+        private int scanned;
+        private boolean skipping;
+        private boolean corrupt;
+
+        private Decoding(int format, Sink sink, int maxLength) {
+            this.format = format;
+            this.sink = sink;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (corrupt) {
+                return;
+            }
+            if (skipping) {
+                int end = off;
+                while (end < off + len && b[end] != delimiter()) {
+                    end++;
+                }
+                if (end == off + len) {
+                    return;
+                }
+                skipping = false;
+                len -= end + 1 - off;
+                off = end + 1;
+            }
+            if (size + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + len));
+            }
+            System.arraycopy(b, off, buffer, size, len);
+            size += len;
+            int consumed = format == LENGTH_PREFIXED ? frames() : delimited();
+            if (consumed > 0) {
+                System.arraycopy(buffer, consumed, buffer, 0, size - consumed);
+                size -= consumed;
+                scanned -= consumed;
+            }
+            if (format != LENGTH_PREFIXED && size > maxLength) {
+                skipping = true;
+                size = 0;
+                scanned = 0;
+            }
+        }
+
+        synchronized void end() {
+            if (format != LENGTH_PREFIXED && size > 0) {
+                record(0, size);
+            }
+            size = 0;
+            scanned = 0;
+            skipping = false;
+        }
+
+        private byte delimiter() {
+            return format == NUL ? 0 : (byte) '\n';
+        }
+
+        private int delimited() {
+            byte delimiter = delimiter();
+            int start = 0;
+            for (int i = scanned; i < size; i++) {
+                if (buffer[i] == delimiter) {
+                    record(start, i - start);
+                    start = i + 1;
+                }
+            }
+            scanned = size;
+            return start;
+        }
+
+        private int frames() {
+            int start = 0;
+            while (size - start >= 4) {
+                int length = ((buffer[start] & 0xFF) << 24) | ((buffer[start + 1] & 0xFF) << 16)
+                        | ((buffer[start + 2] & 0xFF) << 8) | (buffer[start + 3] & 0xFF);
+                if (length < 0 || length > maxLength) {
+                    corrupt = true;
+                    return size;
+                }
+                if (size - start - 4 < length) {
+                    break;
+                }
+                sink.accept(buffer, start + 4, length);
+                start += 4 + length;
+            }
+            return start;
+        }
+
+        private void record(int offset, int length) {
+            if (format != NUL && length > 0 && buffer[offset + length - 1] == '\r') {
+                length--;
+            }
+            if (length > maxLength) {
+                return;
+            }
+            if (format == JSON && blank(offset, length)) {
+                return;
+            }
+            sink.accept(buffer, offset, length);
+        }
+
+        private boolean blank(int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (!Character.isWhitespace(buffer[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
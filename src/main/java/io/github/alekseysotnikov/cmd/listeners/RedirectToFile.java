@@ -1,9 +1,11 @@
 package io.github.alekseysotnikov.cmd.listeners;
 
-import io.github.alekseysotnikov.cmd.core.ProcessListenerAdapter;
 import io.github.alekseysotnikov.cmd.core.Listening;
 import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.listener.ProcessListener;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -12,14 +14,26 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Saves either output or error stream into a file within the working directory, even if the process stopped unexpectedly
+ * Saves either output or error stream into a file within the working directory, even if the process stopped unexpectedly.
+ * File stream is opened right before each start and tracked per started process, so one instance serves any number
+ * of commands and a command which never started leaves the file untouched.
+ * The file is truncated by default and written through a buffer, which is flushed once the process finished,
+ * so {@link Listening.AfterStop} listeners see the whole file, or stopped if it did not finish normally.
+ * The stream is also kept for the result of the execution unless {@link #withoutCopy()} is asked for
  */
 public final class RedirectToFile implements Listening.BeforeStart, Listening.AfterStop {
+    private static final int BUFFER = 64 * 1024;
     private final File outputFile;
     private final boolean fromErrorStream;
-    private OutputStream outputStream;
+    private final boolean append;
+    private final Rotation rotation;
+    private final long region;
+    private final boolean copy;
+    private final Map<Process, OutputStream> outputStreams = new ConcurrentHashMap<>();
 
     public static RedirectToFile fromOutputStream(String path){
         return new RedirectToFile(path);
@@ -42,20 +56,90 @@ public final class RedirectToFile implements Listening.BeforeStart, Listening.Af
     }
 
     public RedirectToFile(File outputFile, boolean fromErrorStream) {
+        this(outputFile, fromErrorStream, false, null, 0, true);
+    }
+
+    private RedirectToFile(File outputFile, boolean fromErrorStream, boolean append, Rotation rotation, long region,
+                           boolean copy) {
         this.outputFile = outputFile;
         this.fromErrorStream = fromErrorStream;
+        this.append = append;
+        this.rotation = rotation;
+        this.region = region;
+        this.copy = copy;
+    }
+
+    /**
+     * Append to the file instead of truncating it
+     */
+    public RedirectToFile appending() {
+        return new RedirectToFile(outputFile, fromErrorStream, true, rotation, region, copy);
+    }
+
+    /**
+     * Split the file into segments, so a long-running process does not fill the disk
+     *
+     * @param rotation
+     */
+    public RedirectToFile rotating(Rotation rotation) {
+        return new RedirectToFile(outputFile, fromErrorStream, append, rotation, region, copy);
+    }
+
+    /**
+     * Write through memory mapped regions of 8 MB, the file is preallocated region by region
+     * and cut down to the written size once the process finished. Until then the file ends with zeros
+     * up to the end of its last region, which is what {@link Listening.AfterFinish} listeners given to
+     * {@code listening(...)} see, since they run first, and what stays on disk if the JVM crashes
+     */
+    public RedirectToFile mapped() {
+        return mapped(8 * 1024 * 1024);
+    }
+
+    /**
+     * @param region size of a mapped region
+     */
+    public RedirectToFile mapped(long region) {
+        if (region <= 0 || region > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Mapped region of " + region + " bytes is out of range");
+        }
+        return new RedirectToFile(outputFile, fromErrorStream, append, rotation, region, copy);
+    }
+
+    /**
+     * Do not keep the output in memory for the result of the execution, so a chatty process costs no memory
+     * and the result has no output
+     */
+    public RedirectToFile withoutCopy() {
+        return new RedirectToFile(outputFile, fromErrorStream, append, rotation, region, false);
+    }
+
+    /**
+     * Same redirection, but the OS writes the stream into the file without pumping it through the JVM.
+     * Neither rotation nor mapping can be done without the JVM
+     */
+    public NativeRedirectToFile natively() {
+        if (rotation != null || region > 0) {
+            throw new IllegalStateException("Rotated or mapped file can not be written natively");
+        }
+        return new NativeRedirectToFile(outputFile, !fromErrorStream, fromErrorStream, append);
     }
 
     @Override
     public void run(ProcessExecutor processExecutor) {
-        processExecutor.readOutput(true);
-        outputStream = createFileOS(processExecutor.getDirectory());
-        new RedirectTo(outputStream, fromErrorStream).run(processExecutor);
-        processExecutor.addListener(new ProcessListenerAdapter((Listening.AfterStop) this));
+        if (copy) {
+            processExecutor.readOutput(true);
+        }
+        final Switch target = new Switch();
+        new RedirectTo(target, fromErrorStream).run(processExecutor);
+        processExecutor.addListener(new Opening(target));
     }
 
     @Override
     public void run(Process process) {
+        OutputStream outputStream = outputStreams.remove(process);
+        if (outputStream == null) {
+            return;
+        }
         try {
             outputStream.close();
         } catch (IOException e) {
@@ -63,6 +147,91 @@ public final class RedirectToFile implements Listening.BeforeStart, Listening.Af
         }
     }
 
+    /**
+     * Opens the file right before each start, a command which did not start gets its file closed
+     */
+    private final class Opening extends ProcessListener implements Listening.StartFailed {
+        private final Switch target;
+        private final ThreadLocal<OutputStream> starting = new ThreadLocal<>();
+
+        Opening(Switch target) {
+            this.target = target;
+        }
+
+        @Override
+        public void beforeStart(ProcessExecutor executor) {
+            final OutputStream outputStream = createFileOS(executor.getDirectory());
+            target.to(outputStream);
+            starting.set(outputStream);
+        }
+
+        @Override
+        public void afterStart(Process process, ProcessExecutor executor) {
+            final OutputStream outputStream = starting.get();
+            starting.remove();
+            if (outputStream != null) {
+                outputStreams.put(process, outputStream);
+            }
+        }
+
+        @Override
+        public void afterFinish(Process process, ProcessResult result) {
+            RedirectToFile.this.run(process);
+        }
+
+        @Override
+        public void afterStop(Process process) {
+            RedirectToFile.this.run(process);
+        }
+
+        @Override
+        public void run(ProcessExecutor executor) {
+            final OutputStream outputStream = starting.get();
+            starting.remove();
+            if (outputStream == null) {
+                return;
+            }
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                // the start failed already, that is what the caller gets
+            }
+        }
+    }
+
+    /**
+     * Stream redirected to once at configure time, it writes to the file of the latest start
+     */
+    private static final class Switch extends OutputStream {
+        private volatile OutputStream target;
+
+        void to(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        /**
+         * The file is closed once its process stopped
+         */
+        @Override
+        public void close() {
+        }
+    }
+
     private OutputStream createFileOS(File workDir) {
         Path outputPath;
         if (outputFile.isAbsolute() || workDir == null) {
@@ -71,9 +240,24 @@ public final class RedirectToFile implements Listening.BeforeStart, Listening.Af
             outputPath = Paths.get(workDir.getPath(), outputFile.getPath());
         }
         try {
-            return Files.newOutputStream(outputPath, StandardOpenOption.CREATE);
+            return rotation == null
+                    ? open(outputPath, append, region)
+                    : new RotatingFileStream(outputPath, append, rotation, region);
         } catch (IOException e) {
             throw new UncheckedIOException("Output file " + outputPath + " can not be created", e);
         }
     }
+
+    /**
+     * @param path
+     * @param append
+     * @param region size of a mapped region, 0 for a buffered stream
+     */
+    static OutputStream open(Path path, boolean append, long region) throws IOException {
+        if (region > 0) {
+            return new MappedFileStream(path, append, region);
+        }
+        return new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING), BUFFER);
+    }
 }
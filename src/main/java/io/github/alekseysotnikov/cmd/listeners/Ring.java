@@ -0,0 +1,76 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Preallocated circular buffer of the last bytes written into it. A write is at most two array copies,
+ * nothing is allocated until the content is read
+ */
+public final class Ring extends OutputStream {
+    private final byte[] buffer;
+    private long written;
+
+    /**
+     * @param capacity max number of kept bytes
+     */
+    public Ring(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (buffer.length > 0) {
+            buffer[(int) (written % buffer.length)] = (byte) b;
+        }
+        written++;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        written += len;
+        if (len > buffer.length) {
+            off += len - buffer.length;
+            len = buffer.length;
+        }
+        if (len == 0) {
+            return;
+        }
+        int start = (int) ((written - len) % buffer.length);
+        int first = Math.min(len, buffer.length - start);
+        System.arraycopy(b, off, buffer, start, first);
+        System.arraycopy(b, off + first, buffer, 0, len - first);
+    }
+
+    /**
+     * @return kept bytes in the order they were written
+     */
+    public synchronized byte[] bytes() {
+        int size = (int) Math.min(written, buffer.length);
+        byte[] bytes = new byte[size];
+        int start = (int) ((written - size) % Math.max(1, buffer.length));
+        int first = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, bytes, 0, first);
+        System.arraycopy(buffer, 0, bytes, first, size - first);
+        return bytes;
+    }
+
+    /**
+     * @param lines
+     * @return at most the given number of last lines among the kept bytes, the first one may be cut
+     */
+    byte[] lines(int lines) {
+        byte[] bytes = bytes();
+        int end = bytes.length;
+        if (end > 0 && bytes[end - 1] == '\n') {
+            end--;
+        }
+        int found = 0;
+        for (int i = end - 1; i >= 0; i--) {
+            if (bytes[i] == '\n' && ++found == lines) {
+                return Arrays.copyOfRange(bytes, i + 1, bytes.length);
+            }
+        }
+        return bytes;
+    }
+}
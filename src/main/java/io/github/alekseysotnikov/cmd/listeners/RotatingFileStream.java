@@ -0,0 +1,175 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes into the file until the {@link Rotation} says otherwise, then moves it aside as the next numbered segment
+ * and starts over. Compression and deletion of old segments run on a background thread, so the pumping thread
+ * only pays for a rename. Closing waits for the background work of the stream
+ */
+final class RotatingFileStream extends OutputStream {
+    private static final ExecutorService ROTATED = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RotatingFileStream");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Path path;
+    private final Rotation rotation;
+    private final long region;
+    private final Pattern segments;
+    private final List<Future<?>> rotated = new ArrayList<>();
+    private OutputStream current;
+    private long size;
+    private long started;
+    private long sequence;
+
+    /**
+     * @param path
+     * @param append
+     * @param rotation
+     * @param region   size of a mapped region, 0 for a buffered stream
+     */
+    RotatingFileStream(Path path, boolean append, Rotation rotation, long region) throws IOException {
+        this.path = path;
+        this.rotation = rotation;
+        this.region = region;
+        this.segments = Pattern.compile(Pattern.quote(path.getFileName().toString()) + "\\.(\\d+)(\\.gz)?");
+        this.sequence = lastSequence();
+        this.size = append && Files.exists(path) ? Files.size(path) : 0;
+        this.current = RedirectToFile.open(path, append, region);
+        this.started = System.nanoTime();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (rotation.maxNanos() > 0 && size > 0 && System.nanoTime() - started >= rotation.maxNanos()) {
+            rotate();
+        }
+        while (len > 0) {
+            if (rotation.maxBytes() > 0 && size >= rotation.maxBytes()) {
+                rotate();
+            }
+            int n = rotation.maxBytes() > 0 ? (int) Math.min(len, rotation.maxBytes() - size) : len;
+            current.write(b, off, n);
+            size += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        current.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        current.close();
+        try {
+            for (Future<?> future : rotated) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rotating " + path, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Rotated segments of " + path + " can not be processed", e.getCause());
+        } finally {
+            rotated.clear();
+        }
+    }
+
+    private void rotate() throws IOException {
+        current.close();
+        Path segment = path.resolveSibling(path.getFileName() + "." + (++sequence));
+        Files.move(path, segment, StandardCopyOption.REPLACE_EXISTING);
+        long expired = sequence - rotation.keep();
+        rotated.removeIf(Future::isDone);
+        rotated.add(ROTATED.submit(() -> {
+            if (rotation.gzip()) {
+                compress(segment);
+            }
+            delete(expired);
+            return null;
+        }));
+        current = RedirectToFile.open(path, false, region);
+        size = 0;
+        started = System.nanoTime();
+    }
+
+    private void compress(Path segment) throws IOException {
+        Path compressed = segment.resolveSibling(segment.getFileName() + ".gz");
+        Path temporary = segment.resolveSibling(segment.getFileName() + ".gz.tmp");
+        try (InputStream in = Files.newInputStream(segment);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), 64 * 1024)) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+        } catch (NoSuchFileException e) {
+            Files.deleteIfExists(temporary);
+            return;
+        }
+        Files.move(temporary, compressed, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(segment);
+    }
+
+    /**
+     * Delete segments up to the given number, including leftovers of a previous run
+     */
+    private void delete(long expired) throws IOException {
+        if (expired <= 0) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory())) {
+            for (Path file : files) {
+                Matcher matcher = segments.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) <= expired) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private long lastSequence() throws IOException {
+        long last = 0;
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return last;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = segments.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    last = Math.max(last, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return last;
+    }
+
+    private Path directory() {
+        return path.toAbsolutePath().getParent();
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When {@link RedirectToFile} starts a new segment of the file and how many rotated segments it keeps.
+ * Rotated segments are named after the file with an increasing number, e.g. {@code output.txt.7},
+ * and are optionally compressed into {@code output.txt.7.gz} in the background
+ */
+public final class Rotation {
+    private final long maxBytes;
+    private final long maxNanos;
+    private final int keep;
+    private final boolean gzip;
+
+    /**
+     * @param maxBytes max size of a segment
+     */
+    public static Rotation bySize(long maxBytes) {
+        return new Rotation(maxBytes, 0, TimeUnit.NANOSECONDS, 10, false);
+    }
+
+    /**
+     * A segment is rotated on the first write after the period, nothing is rotated while the process is silent
+     *
+     * @param period
+     * @param unit
+     */
+    public static Rotation byTime(long period, TimeUnit unit) {
+        return new Rotation(0, period, unit, 10, false);
+    }
+
+    /**
+     * @param maxBytes max size of a segment, 0 for no limit
+     * @param period   max age of a segment, 0 for no limit
+     * @param unit
+     * @param keep     number of rotated segments to keep, older ones are deleted
+     * @param gzip
+     */
+    public Rotation(long maxBytes, long period, TimeUnit unit, int keep, boolean gzip) {
+        if (maxBytes < 0 || period < 0 || keep < 0) {
+            throw new IllegalArgumentException("Rotation limits can not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.maxNanos = unit.toNanos(period);
+        this.keep = keep;
+        this.gzip = gzip;
+    }
+
+    public Rotation keeping(int segments) {
+        return new Rotation(maxBytes, maxNanos, TimeUnit.NANOSECONDS, segments, gzip);
+    }
+
+    /**
+     * Compress rotated segments, the current one is left as is
+     */
+    public Rotation gzipped() {
+        return new Rotation(maxBytes, maxNanos, TimeUnit.NANOSECONDS, keep, true);
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    long maxNanos() {
+        return maxNanos;
+    }
+
+    int keep() {
+        return keep;
+    }
+
+    boolean gzip() {
+        return gzip;
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.ProcessBuilderOf;
+import io.github.alekseysotnikov.cmd.core.ProcessListenerAdapter;
+import org.zeroturnaround.exec.ProcessExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the last bytes or lines of output and error streams of every process in preallocated ring buffers,
+ * so memory stays the same however much the process prints. The tails are readable from any listener after start,
+ * e.g. {@link Listening.AfterStop}, and are dropped together with the process object.
+ * Error stream has its own tail unless it is merged into output stream, which is decided when the command
+ * starts for the first time, so the order of configuring does not matter
+ */
+public final class Tail implements Listening.BeforeStart {
+    private final int lines;
+    private final int bytes;
+    private final Map<Process, Ring[]> tails = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * @param bytes number of the last bytes to keep
+     */
+    public static Tail bytes(int bytes) {
+        return new Tail(Integer.MAX_VALUE, bytes);
+    }
+
+    /**
+     * Lines of up to 1 KB are kept whole
+     *
+     * @param lines number of the last lines to keep
+     */
+    public static Tail lines(int lines) {
+        if (lines > Integer.MAX_VALUE / 1024) {
+            throw new IllegalArgumentException("Tail of " + lines + " lines of 1 KB does not fit a buffer");
+        }
+        return new Tail(lines, lines * 1024);
+    }
+
+    /**
+     * @param lines number of the last lines to keep
+     * @param bytes size of a buffer, the first kept line is cut if they do not fit
+     */
+    public Tail(int lines, int bytes) {
+        if (lines <= 0 || bytes < 0) {
+            throw new IllegalArgumentException("Tail of " + lines + " lines and " + bytes + " bytes is not possible");
+        }
+        this.lines = lines;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void run(ProcessExecutor processExecutor) {
+        final Ring output = new Ring(bytes);
+        final Ring error = new Ring(bytes);
+        final AtomicBoolean decided = new AtomicBoolean();
+        processExecutor.redirectOutputAlsoTo(output);
+        processExecutor.addListener(new ProcessListenerAdapter(
+                executor -> {
+                    if (decided.compareAndSet(false, true)
+                            && !new ProcessBuilderOf(executor).value().redirectErrorStream()) {
+                        executor.redirectErrorAlsoTo(error);
+                    }
+                },
+                (process, executor) -> tails.put(process, new Ring[]{output, error}),
+                (process, result) -> {/*nothing*/},
+                process -> {/*nothing*/}));
+    }
+
+    /**
+     * @param process
+     * @return tail of the output stream, empty for unknown processes
+     */
+    public byte[] output(Process process) {
+        return tail(process, 0);
+    }
+
+    /**
+     * @param process
+     * @return tail of the error stream, empty for unknown processes
+     */
+    public byte[] error(Process process) {
+        return tail(process, 1);
+    }
+
+    public String outputUTF8(Process process) {
+        return new String(output(process), StandardCharsets.UTF_8);
+    }
+
+    public String errorUTF8(Process process) {
+        return new String(error(process), StandardCharsets.UTF_8);
+    }
+
+    private byte[] tail(Process process, int stream) {
+        Ring[] rings = tails.get(process);
+        if (rings == null) {
+            return new byte[0];
+        }
+        return lines == Integer.MAX_VALUE ? rings[stream].bytes() : rings[stream].lines(lines);
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.alekseysotnikov.cmd.listeners;
+
+import io.github.alekseysotnikov.cmd.core.Listening;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.listener.ProcessListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out pre-created work directories instead of creating and deleting one per process, see {@link WorkDir}
+ * and {@link CleanUp}. After the process stopped only the contents of its directory are deleted, and the directory
+ * goes back to the pool unless the pool already keeps its max number of idle ones. A process is not started
+ * while the directories take more than the disk quota, the usage is measured at most once a second
+ */
+public final class WorkDirPool implements Listening.BeforeStart, Listening.AfterStop, AutoCloseable {
+    private static final long MEASURE_PERIOD = TimeUnit.SECONDS.toNanos(1);
+    private final File root;
+    private final int maxDirs;
+    private final long maxBytes;
+    private final BlockingDeque<File> idle = new LinkedBlockingDeque<>();
+    private final Map<Process, File> busy = new ConcurrentHashMap<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private long usedBytes;
+    private long measured;
+
+    /**
+     * Pool in {@code /dev/shm}, which is a tmpfs on Linux, or in the temporary directory if there is none
+     *
+     * @param name     name of the pool directory
+     * @param maxDirs  max number of idle directories
+     * @param maxBytes max size of all the directories
+     */
+    public static WorkDirPool inMemory(String name, int maxDirs, long maxBytes) {
+        File shm = new File("/dev/shm");
+        File parent = shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+        return new WorkDirPool(new File(parent, name), maxDirs, maxBytes);
+    }
+
+    /**
+     * @param root     directory of the pool, it is created along with all the idle directories
+     * @param maxDirs  max number of idle directories
+     * @param maxBytes max size of all the directories
+     */
+    public WorkDirPool(File root, int maxDirs, long maxBytes) {
+        if (maxDirs < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException(
+                    "Pool size and disk quota can not be negative, got " + maxDirs + " and " + maxBytes);
+        }
+        this.root = root;
+        this.maxDirs = maxDirs;
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < maxDirs; i++) {
+            idle.add(created());
+        }
+    }
+
+    /**
+     * A directory is handed out once the process is about to start, so a command which is never started holds none
+     */
+    @Override
+    public void run(ProcessExecutor processExecutor) {
+        processExecutor.addListener(new Lease());
+    }
+
+    @Override
+    public void run(Process process) {
+        File dir = busy.remove(process);
+        if (dir != null) {
+            recycle(dir);
+        }
+    }
+
+    /**
+     * @return number of directories ready to be handed out
+     */
+    public int idle() {
+        return idle.size();
+    }
+
+    /**
+     * @return size of all the directories as of the last measurement
+     */
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Delete the pool with all its directories, including the ones still in use. Symbolic links are not followed
+     */
+    @Override
+    public void close() throws IOException {
+        idle.clear();
+        if (root.isDirectory()) {
+            clean(root.toPath());
+            Files.delete(root.toPath());
+        }
+    }
+
+    private void recycle(File dir) {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        try {
+            clean(dir.toPath());
+            if (idle.size() < maxDirs) {
+                idle.offerFirst(dir);
+            } else {
+                Files.delete(dir.toPath());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Work directory " + dir.toPath() + " can not be cleaned", e);
+        }
+    }
+
+    private File created() {
+        File dir = new File(root, "dir-" + created.incrementAndGet());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new UncheckedIOException(
+                    new IOException("Work directory " + dir.toPath() + " can not be created"));
+        }
+        return dir;
+    }
+
+    private synchronized void checkQuota() {
+        long now = System.nanoTime();
+        if (measured == 0 || now - measured >= MEASURE_PERIOD || usedBytes > maxBytes) {
+            usedBytes = size(root);
+            measured = now;
+        }
+        if (usedBytes > maxBytes) {
+            throw new UncheckedIOException(new IOException(
+                    "Work directories in " + root.toPath() + " take " + usedBytes + " bytes out of " + maxBytes));
+        }
+    }
+
+    /**
+     * Size of the files, tolerating the ones deleted by running processes meanwhile. Symbolic links are not followed
+     */
+    private static long size(File root) {
+        final long[] size = new long[1];
+        try {
+            Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile()) {
+                        size[0] += attributes.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Work directories in " + root.toPath() + " can not be measured", e);
+        }
+        return size[0];
+    }
+
+    /**
+     * Delete the contents of the directory. Symbolic links left by the process are deleted, not followed
+     */
+    private static void clean(final Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path visited, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                if (!visited.equals(dir)) {
+                    Files.delete(visited);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Directory of one command, taken before every start and back to the pool once the process stopped
+     * or failed to start
+     */
+    private final class Lease extends ProcessListener implements Listening.StartFailed {
+        private final ThreadLocal<File> starting = new ThreadLocal<>();
+
+        @Override
+        public void beforeStart(ProcessExecutor executor) {
+            checkQuota();
+            File polled = idle.pollFirst();
+            File dir = polled == null ? created() : polled;
+            starting.set(dir);
+            executor.directory(dir);
+        }
+
+        @Override
+        public void afterStart(Process process, ProcessExecutor executor) {
+            File dir = starting.get();
+            starting.remove();
+            if (dir != null) {
+                busy.put(process, dir);
+            }
+        }
+
+        @Override
+        public void afterStop(Process process) {
+            WorkDirPool.this.run(process);
+        }
+
+        @Override
+        public void run(ProcessExecutor executor) {
+            File dir = starting.get();
+            starting.remove();
+            if (dir != null) {
+                recycle(dir);
+            }
+        }
+    }
+}
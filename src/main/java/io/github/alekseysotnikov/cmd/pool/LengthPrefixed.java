@@ -0,0 +1,28 @@
+package io.github.alekseysotnikov.cmd.pool;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Every message is preceded by its length as a 4 bytes big-endian integer
+ */
+public final class LengthPrefixed implements Protocol {
+    @Override
+    public void write(OutputStream input, byte[] request) throws IOException {
+        DataOutputStream data = new DataOutputStream(input);
+        data.writeInt(request.length);
+        data.write(request);
+        data.flush();
+    }
+
+    @Override
+    public byte[] read(InputStream output) throws IOException {
+        DataInputStream data = new DataInputStream(output);
+        byte[] response = new byte[data.readInt()];
+        data.readFully(response);
+        return response;
+    }
+}
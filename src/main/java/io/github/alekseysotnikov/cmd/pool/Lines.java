@@ -0,0 +1,32 @@
+package io.github.alekseysotnikov.cmd.pool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * One line of request, one line of response. New line characters are not part of the messages
+ */
+public final class Lines implements Protocol {
+    @Override
+    public void write(OutputStream input, byte[] request) throws IOException {
+        input.write(request);
+        input.write('\n');
+        input.flush();
+    }
+
+    @Override
+    public byte[] read(InputStream output) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        int b;
+        while ((b = output.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("Worker closed its output in the middle of a response");
+            }
+            response.write(b);
+        }
+        return response.toByteArray();
+    }
+}
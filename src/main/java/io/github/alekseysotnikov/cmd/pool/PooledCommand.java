@@ -0,0 +1,86 @@
+package io.github.alekseysotnikov.cmd.pool;
+
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.Flow;
+import io.github.alekseysotnikov.cmd.core.FuturePublisher;
+import org.zeroturnaround.exec.ProcessOutput;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Request to a {@link WorkerPool} in the shape of a command. Exit value is always 0, the response is the output
+ */
+final class PooledCommand implements Command {
+    private final WorkerPool pool;
+    private final byte[] request;
+
+    PooledCommand(WorkerPool pool, byte[] request) {
+        this.pool = pool;
+        this.request = request;
+    }
+
+    @Override
+    public ProcessResult execute() throws IOException, InterruptedException {
+        byte[] response = pool.request(request);
+        return new ProcessResult(0, new ProcessOutput(response));
+    }
+
+    @Override
+    public ProcessResult executeNoTimeout() throws IOException, InterruptedException {
+        return execute();
+    }
+
+    /**
+     * There is no process of its own to start, use {@link #async()}
+     */
+    @Override
+    public StartedProcess start() {
+        throw new UnsupportedOperationException("Command " + commandLine() + " has no process of its own, use async()");
+    }
+
+    @Override
+    public CompletableFuture<ProcessResult> async() {
+        return pool.async(request).thenApply(response -> new ProcessResult(0, new ProcessOutput(response)));
+    }
+
+    /**
+     * The whole response is one chunk
+     */
+    @Override
+    public Flow.Publisher<byte[]> chunks() {
+        return new FuturePublisher(this::async);
+    }
+
+    @Override
+    public Stream<String> lines() throws IOException {
+        try {
+            return new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(execute().output()), StandardCharsets.UTF_8)).lines();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the response", e);
+        }
+    }
+
+    @Override
+    public Stream<String> lines(boolean fromErrorStream) throws IOException {
+        return fromErrorStream ? Stream.empty() : lines();
+    }
+
+    /**
+     * @return command line of the tool answering the request
+     */
+    @Override
+    public List<String> commandLine() {
+        return pool.commandLine();
+    }
+}
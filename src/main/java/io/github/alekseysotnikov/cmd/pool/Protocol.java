@@ -0,0 +1,18 @@
+package io.github.alekseysotnikov.cmd.pool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * How requests and responses are delimited on the standard streams of a worker
+ */
+public interface Protocol {
+    void write(OutputStream input, byte[] request) throws IOException;
+
+    /**
+     * @param output buffered output stream of the worker
+     * @return next response
+     */
+    byte[] read(InputStream output) throws IOException;
+}
@@ -0,0 +1,97 @@
+package io.github.alekseysotnikov.cmd.pool;
+
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.RawStreams;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One warm process answering requests over its standard streams. Its error stream is drained and dropped
+ */
+final class Worker {
+    private final RawStreams streams = new RawStreams();
+    private final StartedProcess process;
+    private final OutputStream input;
+    private final InputStream output;
+    private volatile boolean broken;
+    private volatile long lastUsed = System.nanoTime();
+    private int requests;
+
+    Worker(ICmd cmd, List<String> commandLine) throws IOException {
+        this.process = cmd
+                .listening((Listening.BeforeStart) executor -> executor.redirectErrorStream(false).streams(streams))
+                .command(commandLine)
+                .start();
+        this.input = new BufferedOutputStream(streams.input());
+        this.output = new BufferedInputStream(streams.output());
+        Thread drain = new Thread(this::drainErrors, "Worker-errors-" + process.getProcess());
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    byte[] request(Protocol protocol, byte[] request) throws IOException {
+        try {
+            protocol.write(input, request);
+            byte[] response = protocol.read(output);
+            requests++;
+            lastUsed = System.nanoTime();
+            return response;
+        } catch (IOException | RuntimeException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    boolean alive() {
+        return !broken && process.getProcess().isAlive();
+    }
+
+    int requests() {
+        return requests;
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - lastUsed;
+    }
+
+    Process process() {
+        return process.getProcess();
+    }
+
+    void close() {
+        broken = true;
+        try {
+            input.close();
+            process.getFuture().get(1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            process.getFuture().cancel(true);
+        }
+    }
+
+    /**
+     * Kill the process, so a request waiting for its response fails
+     */
+    void kill() {
+        broken = true;
+        process.getProcess().destroyForcibly();
+    }
+
+    private void drainErrors() {
+        byte[] buffer = new byte[1024];
+        try (InputStream error = streams.error()) {
+            while (error.read(buffer) != -1) {
+                // drop it, the worker must not block on a full pipe
+            }
+        } catch (IOException e) {
+            // the worker is gone
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package io.github.alekseysotnikov.cmd.pool;
+
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps warm instances of a tool speaking a request/response protocol over its standard streams,
+ * and dispatches requests to idle ones. Crashed workers are replaced, and workers are recycled
+ * after the given number of requests or idle time
+ */
+public final class WorkerPool implements AutoCloseable {
+    private final ICmd cmd;
+    private final List<String> commandLine;
+    private final Protocol protocol;
+    private final int size;
+    private final int maxRequests;
+    private final long maxIdleNanos;
+    private final Semaphore permits;
+    private final BlockingDeque<Worker> idle = new LinkedBlockingDeque<>();
+    private final Set<Worker> live = ConcurrentHashMap.newKeySet();
+    private int workers;
+    private final ScheduledExecutorService keeper;
+    private final ExecutorService requests;
+    private volatile boolean closed;
+
+    /**
+     * @param cmd         template without an interpreter, its listeners see start and stop of every worker
+     * @param commandLine command line of the tool
+     * @param protocol
+     * @param size        number of warm workers, no more of them live at once
+     * @param maxRequests number of requests after which a worker is replaced by a fresh one
+     * @param maxIdle     idle time after which a worker is replaced by a fresh one
+     * @param unit        unit of the idle time
+     */
+    public WorkerPool(ICmd cmd, List<String> commandLine, Protocol protocol,
+                      int size, int maxRequests, long maxIdle, TimeUnit unit) throws IOException {
+        this.cmd = cmd;
+        this.commandLine = new ArrayList<>(commandLine);
+        this.protocol = protocol;
+        this.size = size;
+        this.maxRequests = maxRequests;
+        this.maxIdleNanos = unit.toNanos(maxIdle);
+        this.permits = new Semaphore(size);
+        this.keeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "WorkerPool-keeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.requests = Executors.newFixedThreadPool(size, task -> {
+            Thread thread = new Thread(task, "WorkerPool-requests");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < size && reserve(); i++) {
+                idle.add(started());
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(100), maxIdleNanos / 2);
+        keeper.scheduleWithFixedDelay(this::recycleIdle, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Send the request to an idle worker, waiting for one if all of them are busy
+     *
+     * @param request
+     * @return response of the worker
+     * @throws IOException if the worker crashed, it is replaced then
+     */
+    public byte[] request(byte[] request) throws IOException, InterruptedException {
+        try {
+            return request(request, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Request can not time out without a timeout", e);
+        }
+    }
+
+    /**
+     * Send the request to an idle worker, waiting for one if all of them are busy. The time
+     * is counted for both the wait and the response, the worker is killed and replaced if it does not answer in time
+     *
+     * @param request
+     * @param timeout
+     * @param unit
+     * @return response of the worker
+     * @throws IOException if the worker crashed, it is replaced then
+     */
+    public byte[] request(byte[] request, long timeout, TimeUnit unit)
+            throws IOException, InterruptedException, TimeoutException {
+        long started = System.nanoTime();
+        long nanos = unit.toNanos(timeout);
+        if (!permits.tryAcquire(nanos, TimeUnit.NANOSECONDS)) {
+            throw new TimeoutException("No worker of " + commandLine + " got free in " + unit.toMillis(timeout) + " ms");
+        }
+        try {
+            Worker worker = borrow();
+            ScheduledFuture<?> kill = nanos == Long.MAX_VALUE
+                    ? null
+                    : keeper.schedule(worker::kill, nanos - (System.nanoTime() - started), TimeUnit.NANOSECONDS);
+            try {
+                byte[] response = worker.request(protocol, request);
+                if (kill == null || kill.cancel(false)) {
+                    giveBack(worker);
+                } else {
+                    replace(worker);
+                }
+                return response;
+            } catch (IOException | RuntimeException e) {
+                replace(worker);
+                if (kill != null && !kill.cancel(false)) {
+                    throw new TimeoutException("Worker of " + commandLine + " did not answer in "
+                            + unit.toMillis(timeout) + " ms and was killed");
+                }
+                throw e;
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Send the request from one of the threads of the pool, at most one thread per worker is busy,
+     * the other requests are queued without holding a thread
+     *
+     * @param request
+     * @return future response of the worker
+     */
+    public CompletableFuture<byte[]> async(byte[] request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request(request);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, requests);
+    }
+
+    /**
+     * Command sending the request to the pool as it is, no process is started for it
+     *
+     * @param request encoded the way the tool expects it
+     * @return command with the response as its output
+     */
+    public Command command(byte[] request) {
+        return new PooledCommand(this, request.clone());
+    }
+
+    /**
+     * @return command line of the tool
+     */
+    public List<String> commandLine() {
+        return new ArrayList<>(commandLine);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        keeper.shutdownNow();
+        requests.shutdown();
+        Worker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            close(worker);
+        }
+    }
+
+    /**
+     * Idle worker, or a new one if less than the size of the pool live. Otherwise a replacement
+     * is warming up, as the caller holds a permit, so wait for it
+     */
+    private Worker borrow() throws IOException, InterruptedException {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Worker pool is closed");
+            }
+            Worker worker = idle.pollFirst();
+            if (worker == null) {
+                if (reserve()) {
+                    return started();
+                }
+                worker = idle.pollFirst(10, TimeUnit.MILLISECONDS);
+                if (worker == null) {
+                    continue;
+                }
+            }
+            if (worker.alive() && worker.idleNanos() < maxIdleNanos) {
+                return worker;
+            }
+            close(worker);
+        }
+    }
+
+    private void giveBack(Worker worker) {
+        if (closed) {
+            close(worker);
+        } else if (worker.requests() >= maxRequests) {
+            replace(worker);
+        } else {
+            idle.addFirst(worker);
+        }
+    }
+
+    /**
+     * Close the worker and start a fresh one in the background, so the callers do not wait for it
+     */
+    private void replace(Worker worker) {
+        close(worker);
+        if (!closed) {
+            keeper.execute(this::warmUp);
+        }
+    }
+
+    /**
+     * Start a worker unless as many as the size of the pool live or are starting, busy ones included
+     */
+    private void warmUp() {
+        if (!reserve()) {
+            return;
+        }
+        try {
+            Worker worker = started();
+            if (closed) {
+                close(worker);
+            } else {
+                idle.addLast(worker);
+            }
+        } catch (IOException e) {
+            // the next request will try to start it again
+        }
+    }
+
+    /**
+     * Check every idle worker once, from the most to the least recently used, keeping their order
+     */
+    private void recycleIdle() {
+        int checked = idle.size();
+        for (int i = 0; i < checked && permits.tryAcquire(); i++) {
+            try {
+                Worker worker = idle.pollFirst();
+                if (worker == null) {
+                    return;
+                }
+                if (worker.alive() && worker.idleNanos() < maxIdleNanos) {
+                    idle.addLast(worker);
+                } else {
+                    close(worker);
+                    warmUp();
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * @return true if a slot for one more worker is taken
+     */
+    private synchronized boolean reserve() {
+        if (closed || workers >= size) {
+            return false;
+        }
+        workers++;
+        return true;
+    }
+
+    private synchronized void unreserve() {
+        workers--;
+    }
+
+    /**
+     * @return new worker in a reserved slot, the slot is freed if it can not be started
+     */
+    private Worker started() throws IOException {
+        try {
+            Worker worker = new Worker(cmd, commandLine);
+            live.add(worker);
+            return worker;
+        } catch (IOException | RuntimeException e) {
+            unreserve();
+            throw e;
+        }
+    }
+
+    private void close(Worker worker) {
+        if (live.remove(worker)) {
+            unreserve();
+        }
+        worker.close();
+    }
+}
@@ -0,0 +1,212 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Groups small commands of the same interpreter into one shell process, which runs them one after another,
+ * so a group costs one process start instead of one per command. A group is started once it reaches
+ * the max size or once its first command has waited for the linger time. Output, error output and exit code
+ * of every command are framed with a random marker and handed back to the command's own future
+ */
+public final class Batcher implements AutoCloseable {
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Batcher-linger");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ICmd cmd;
+    private final List<String> interpreter;
+    private final int maxBatch;
+    private final long linger;
+    private final TimeUnit unit;
+    private final Shell shell = new Shell();
+    private final String marker = "__batch_" + UUID.randomUUID().toString().replace("-", "") + "__";
+    private final LongAdder batches = new LongAdder();
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingering;
+    private boolean closed;
+
+    /**
+     * @param cmd         template without an interpreter to start the shell of every group
+     * @param interpreter interpreter of the commands, empty if arguments are whole command lines
+     * @param maxBatch    max number of commands in a group
+     * @param linger      max time the first command of a group waits for the others
+     * @param unit
+     */
+    public Batcher(ICmd cmd, String interpreter, int maxBatch, long linger, TimeUnit unit) {
+        if (maxBatch < 1 || linger < 0) {
+            throw new IllegalArgumentException(
+                    "Batch size must be positive and linger non-negative, got " + maxBatch + " and " + linger);
+        }
+        this.cmd = cmd;
+        this.interpreter = interpreter.trim().isEmpty()
+                ? Collections.emptyList()
+                : Collections.singletonList(interpreter);
+        this.maxBatch = maxBatch;
+        this.linger = linger;
+        this.unit = unit;
+    }
+
+    /**
+     * @param arguments arguments of the interpreter
+     * @return command run in the next group
+     */
+    public Command command(String... arguments) {
+        return new SubmittedCommand(this::submit, line(arguments));
+    }
+
+    /**
+     * Add the command to the next group
+     *
+     * @param arguments arguments of the interpreter
+     * @return exit code, output and error output of the command
+     */
+    public CompletableFuture<ScriptResult> submit(String... arguments) {
+        return submit(line(arguments));
+    }
+
+    /**
+     * @return number of started groups
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /**
+     * Start the group being collected, its commands complete in the background
+     */
+    @Override
+    public void close() {
+        List<Pending> batch;
+        synchronized (this) {
+            closed = true;
+            batch = taken();
+        }
+        launch(batch);
+    }
+
+    CompletableFuture<ScriptResult> submit(List<String> line) {
+        CompletableFuture<ScriptResult> result = new CompletableFuture<>();
+        List<Pending> batch = Collections.emptyList();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Batcher is closed");
+            }
+            pending.add(new Pending(line, result));
+            if (pending.size() >= maxBatch) {
+                batch = taken();
+            } else if (pending.size() == 1) {
+                lingering = TIMER.schedule(this::lingered, linger, unit);
+            }
+        }
+        launch(batch);
+        return result;
+    }
+
+    private List<String> line(String... arguments) {
+        List<String> line = new ArrayList<>(interpreter);
+        line.addAll(Arrays.asList(arguments));
+        return line;
+    }
+
+    private void lingered() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = taken();
+        }
+        launch(batch);
+    }
+
+    private List<Pending> taken() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (lingering != null) {
+            lingering.cancel(false);
+            lingering = null;
+        }
+        return batch;
+    }
+
+    private void launch(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        StringBuilder script = new StringBuilder();
+        for (Pending command : batch) {
+            StringBuilder line = new StringBuilder();
+            for (String arg : command.line) {
+                line.append(Shell.quote(arg)).append(' ');
+            }
+            script.append(shell.frame(line.toString(), marker));
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        try {
+            batches.increment();
+            cmd.listening((Listening.BeforeStart) executor -> executor
+                    .redirectInput(new ByteArrayInputStream(script.toString().getBytes(StandardCharsets.UTF_8)))
+                    .redirectErrorStream(false)
+                    .redirectOutputAlsoTo(output)
+                    .redirectErrorAlsoTo(error))
+                    .command(shell.interpreter())
+                    .async()
+                    .whenComplete((result, e) -> demultiplexed(batch, result, output, error));
+        } catch (IOException | RuntimeException e) {
+            for (Pending command : batch) {
+                command.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void demultiplexed(List<Pending> batch, ProcessResult result,
+                               ByteArrayOutputStream output, ByteArrayOutputStream error) {
+        Framed outputs = new Framed(new ByteArrayInputStream(output.toByteArray()));
+        Framed errors = new Framed(new ByteArrayInputStream(error.toByteArray()));
+        byte[] outputEnd = (marker + ":").getBytes(StandardCharsets.UTF_8);
+        byte[] errorEnd = (marker + "\n").getBytes(StandardCharsets.UTF_8);
+        for (Pending command : batch) {
+            try {
+                byte[] out = outputs.until(outputEnd);
+                int exitCode = Integer.parseInt(new String(outputs.until(NEW_LINE), StandardCharsets.US_ASCII).trim());
+                command.result.complete(new ScriptResult(exitCode, out, errors.until(errorEnd)));
+            } catch (EOFException e) {
+                command.result.completeExceptionally(new IOException(
+                        "Batch shell stopped" + (result == null ? "" : " with " + result.getExitValue())
+                                + " before " + command.line + " finished", e));
+            } catch (IOException | RuntimeException e) {
+                command.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final List<String> line;
+        private final CompletableFuture<ScriptResult> result;
+
+        private Pending(List<String> line, CompletableFuture<ScriptResult> result) {
+            this.line = line;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import java.util.List;
+
+/**
+ * How to start a long-lived interpreter and feed it one script after another over its standard input
+ */
+public interface Dialect {
+    /**
+     * @return command line of the interpreter reading scripts from its standard input
+     */
+    List<String> interpreter();
+
+    /**
+     * Wrap the script, so that after running it the interpreter prints the marker followed by ':' and the exit code
+     * and a new line to the output stream, and the marker followed by a new line to the error stream
+     *
+     * @param script
+     * @param marker
+     * @return text to write to the standard input of the interpreter
+     */
+    String frame(String script, String marker);
+}
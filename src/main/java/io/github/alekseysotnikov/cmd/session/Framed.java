@@ -0,0 +1,53 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads a stream frame by frame, a frame ends with the given delimiter
+ */
+final class Framed {
+    private final InputStream stream;
+    private byte[] frame = new byte[8192];
+    private int size;
+
+    Framed(InputStream stream) {
+        this.stream = new BufferedInputStream(stream);
+    }
+
+    /**
+     * @param delimiter
+     * @return bytes before the delimiter, the delimiter itself is skipped
+     * @throws EOFException if the stream ended before the delimiter
+     */
+    byte[] until(byte[] delimiter) throws IOException {
+        size = 0;
+        byte last = delimiter[delimiter.length - 1];
+        int b;
+        while ((b = stream.read()) != -1) {
+            if (size == frame.length) {
+                frame = Arrays.copyOf(frame, frame.length * 2);
+            }
+            frame[size++] = (byte) b;
+            if (b == last && endsWith(delimiter)) {
+                return Arrays.copyOf(frame, size - delimiter.length);
+            }
+        }
+        throw new EOFException("Stream ended in the middle of a frame");
+    }
+
+    private boolean endsWith(byte[] delimiter) {
+        if (size < delimiter.length) {
+            return false;
+        }
+        for (int i = 0; i < delimiter.length; i++) {
+            if (frame[size - delimiter.length + i] != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
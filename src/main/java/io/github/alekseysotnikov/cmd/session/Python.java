@@ -0,0 +1,73 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Python dialect. The interpreter runs a tiny loop reading one script per line as a string literal,
+ * every script gets fresh globals, {@code /dev/null} as its standard input and {@code sys.exit(code)} sets its exit code
+ */
+public final class Python implements Dialect {
+    private static final String LOOP = String.join("\n",
+            "import ast, os, sys, traceback",
+            "scripts = os.fdopen(os.dup(0), 'r', encoding='utf-8')",
+            "os.dup2(os.open(os.devnull, os.O_RDONLY), 0)",
+            "sys.stdin = open(os.devnull)",
+            "for line in scripts:",
+            "    marker, script = ast.literal_eval(line)",
+            "    try:",
+            "        exec(compile(script, '<script>', 'exec'), {'__name__': '__main__'})",
+            "        code = 0",
+            "    except SystemExit as e:",
+            "        code = e.code if isinstance(e.code, int) else (0 if e.code is None else 1)",
+            "    except BaseException:",
+            "        traceback.print_exc()",
+            "        code = 1",
+            "    sys.stdout.flush()",
+            "    sys.stdout.write('%s:%d\\n' % (marker, code))",
+            "    sys.stdout.flush()",
+            "    sys.stderr.write(marker + '\\n')",
+            "    sys.stderr.flush()");
+    private final String interpreter;
+
+    public Python() {
+        this("python3");
+    }
+
+    public Python(String interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    @Override
+    public List<String> interpreter() {
+        return Arrays.asList(interpreter, "-u", "-c", LOOP);
+    }
+
+    @Override
+    public String frame(String script, String marker) {
+        return "(" + literal(marker) + ", " + literal(script) + ")\n";
+    }
+
+    private static String literal(String text) {
+        StringBuilder literal = new StringBuilder(text.length() + 2).append('\'');
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\'':
+                    literal.append("\\'");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append('\'').toString();
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import org.zeroturnaround.exec.ProcessOutput;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exit code, output and error output of one script run in a {@link Session}
+ */
+public final class ScriptResult extends ProcessResult {
+    private final byte[] error;
+
+    public ScriptResult(int exitCode, byte[] output, byte[] error) {
+        super(exitCode, new ProcessOutput(output));
+        this.error = error;
+    }
+
+    public byte[] error() {
+        return error;
+    }
+
+    public String errorUTF8() {
+        return new String(error, StandardCharsets.UTF_8);
+    }
+}
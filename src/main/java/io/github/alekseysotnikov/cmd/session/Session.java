@@ -0,0 +1,194 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.RawStreams;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Long-lived interpreter process fed with one script after another over its standard input,
+ * so a script costs no process start. Output, error output and exit code of every script are framed
+ * with a random marker. Not thread-safe by itself, see {@link SessionPool} for parallelism
+ */
+public final class Session implements AutoCloseable {
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final byte[] END = new byte[0];
+    private final Dialect dialect;
+    private final String marker = "__session_" + UUID.randomUUID().toString().replace("-", "") + "__";
+    private final RawStreams streams = new RawStreams();
+    private final StartedProcess process;
+    private final OutputStream input;
+    private final BlockingQueue<byte[]> outputs = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<byte[]> errors = new ArrayBlockingQueue<>(1);
+    private volatile boolean broken;
+    private int runs;
+
+    /**
+     * Start the interpreter of the dialect with configuring and listeners of the template
+     *
+     * @param cmd     template without an interpreter
+     * @param dialect
+     */
+    public Session(ICmd cmd, Dialect dialect) throws IOException {
+        this.dialect = dialect;
+        this.process = cmd
+                .listening((Listening.BeforeStart) executor -> executor.redirectErrorStream(false).streams(streams))
+                .command(dialect.interpreter())
+                .start();
+        this.input = streams.input();
+        Thread outputReader = new Thread(this::readOutput, "Session-output-" + process.getProcess());
+        outputReader.setDaemon(true);
+        outputReader.start();
+        Thread errorReader = new Thread(this::readErrors, "Session-errors-" + process.getProcess());
+        errorReader.setDaemon(true);
+        errorReader.start();
+    }
+
+    /**
+     * Run the script and wait for its result
+     *
+     * @param script
+     * @return exit code, output and error output of the script
+     * @throws IOException if the interpreter died, the session is not usable anymore then
+     */
+    public ScriptResult run(String script) throws IOException, InterruptedException {
+        try {
+            return run(script, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Script can not time out without a timeout", e);
+        }
+    }
+
+    /**
+     * Run the script and wait for its result at most the given time. If it is not done by then
+     * or the run is interrupted, the interpreter is killed and the session is not usable anymore
+     *
+     * @param script
+     * @param timeout
+     * @param unit
+     * @return exit code, output and error output of the script
+     * @throws IOException if the interpreter died, the session is not usable anymore then
+     */
+    public synchronized ScriptResult run(String script, long timeout, TimeUnit unit)
+            throws IOException, InterruptedException, TimeoutException {
+        if (!alive()) {
+            throw new IOException("Session " + process.getProcess() + " is not alive");
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean completed = false;
+        try {
+            input.write(dialect.frame(script, marker).getBytes(StandardCharsets.UTF_8));
+            input.flush();
+            byte[] out = next(outputs, deadline);
+            int exitCode = Integer.parseInt(new String(next(outputs, deadline), StandardCharsets.US_ASCII).trim());
+            byte[] err = next(errors, deadline);
+            runs++;
+            completed = true;
+            return new ScriptResult(exitCode, out, err);
+        } finally {
+            if (!completed) {
+                broken = true;
+                process.getProcess().destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * @return true if the interpreter is ready to run the next script
+     */
+    public boolean alive() {
+        return !broken && process.getProcess().isAlive();
+    }
+
+    /**
+     * Health check, runs an empty script
+     *
+     * @return true if the interpreter answered properly
+     */
+    public boolean ping() throws InterruptedException {
+        try {
+            return run("").getExitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return number of scripts run so far
+     */
+    public synchronized int runs() {
+        return runs;
+    }
+
+    /**
+     * Close the standard input, so the interpreter exits, and kill it if it does not
+     */
+    @Override
+    public void close() throws InterruptedException {
+        broken = true;
+        try {
+            input.close();
+            process.getFuture().get(1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            process.getFuture().cancel(true);
+        }
+    }
+
+    /**
+     * @return next frame of the stream
+     */
+    private byte[] next(BlockingQueue<byte[]> frames, long deadline)
+            throws IOException, InterruptedException, TimeoutException {
+        byte[] frame = frames.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (frame == null) {
+            throw new TimeoutException("Script did not finish in session " + process.getProcess() + " in time");
+        }
+        if (frame == END) {
+            throw new IOException("Session " + process.getProcess() + " ended unexpectedly");
+        }
+        return frame;
+    }
+
+    private void readOutput() {
+        Framed output = new Framed(streams.output());
+        byte[] delimiter = (marker + ":").getBytes(StandardCharsets.UTF_8);
+        try {
+            while (true) {
+                outputs.put(output.until(delimiter));
+                outputs.put(output.until(NEW_LINE));
+            }
+        } catch (IOException e) {
+            broken = true;
+            outputs.offer(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readErrors() {
+        Framed error = new Framed(streams.error());
+        byte[] delimiter = (marker + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            while (true) {
+                errors.put(error.until(delimiter));
+            }
+        } catch (IOException e) {
+            broken = true;
+            errors.offer(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
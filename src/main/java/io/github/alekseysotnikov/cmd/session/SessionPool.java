@@ -0,0 +1,126 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import io.github.alekseysotnikov.cmd.core.ICmd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fixed number of warm {@link Session}s shared by concurrent callers. Sessions are started lazily,
+ * replaced when they die and recycled after the given number of scripts
+ */
+public final class SessionPool implements AutoCloseable {
+    private final ICmd cmd;
+    private final Dialect dialect;
+    private final int maxRuns;
+    private final Semaphore sessions;
+    private final BlockingDeque<Session> idle = new LinkedBlockingDeque<>();
+    private volatile boolean closed;
+
+    /**
+     * @param cmd     template without an interpreter
+     * @param dialect
+     * @param size    max number of interpreters
+     * @param maxRuns number of scripts after which an interpreter is replaced by a fresh one
+     */
+    public SessionPool(ICmd cmd, Dialect dialect, int size, int maxRuns) {
+        this.cmd = cmd;
+        this.dialect = dialect;
+        this.maxRuns = maxRuns;
+        this.sessions = new Semaphore(size);
+    }
+
+    /**
+     * Run the script on an idle session, waiting for one if all of them are busy
+     *
+     * @param script
+     * @return exit code, output and error output of the script
+     */
+    public ScriptResult run(String script) throws IOException, InterruptedException {
+        try {
+            return run(script, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Script can not time out without a timeout", e);
+        }
+    }
+
+    /**
+     * Run the script on an idle session, waiting for one if all of them are busy. The session is replaced
+     * if the script does not finish in the given time, the time spent waiting for the session is not counted
+     *
+     * @param script
+     * @param timeout
+     * @param unit
+     * @return exit code, output and error output of the script
+     */
+    public ScriptResult run(String script, long timeout, TimeUnit unit)
+            throws IOException, InterruptedException, TimeoutException {
+        sessions.acquire();
+        Session session = null;
+        try {
+            session = borrow();
+            ScriptResult result = session.run(script, timeout, unit);
+            giveBack(session);
+            session = null;
+            return result;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            sessions.release();
+        }
+    }
+
+    /**
+     * Ping idle sessions, those which do not answer are closed and will be replaced on demand
+     */
+    public void check() throws InterruptedException {
+        List<Session> checked = new ArrayList<>();
+        Session session;
+        while ((session = idle.pollFirst()) != null) {
+            if (session.ping()) {
+                checked.add(session);
+            } else {
+                session.close();
+            }
+        }
+        idle.addAll(checked);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        Session session;
+        while ((session = idle.pollFirst()) != null) {
+            session.close();
+        }
+    }
+
+    private Session borrow() throws IOException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Session pool is closed");
+        }
+        Session session;
+        while ((session = idle.pollFirst()) != null) {
+            if (session.alive()) {
+                return session;
+            }
+            session.close();
+        }
+        return new Session(cmd, dialect);
+    }
+
+    private void giveBack(Session session) throws InterruptedException {
+        if (closed || session.runs() >= maxRuns) {
+            session.close();
+        } else {
+            idle.addFirst(session);
+        }
+    }
+}
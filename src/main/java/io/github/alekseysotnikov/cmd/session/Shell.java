@@ -0,0 +1,36 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * POSIX shell dialect (sh, bash, dash...). Every script runs in a subshell with no standard input,
+ * so neither {@code exit} nor a syntax error nor changed variables affect the following scripts
+ */
+public final class Shell implements Dialect {
+    private final String interpreter;
+
+    public Shell() {
+        this("sh");
+    }
+
+    public Shell(String interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    @Override
+    public List<String> interpreter() {
+        return Collections.singletonList(interpreter);
+    }
+
+    @Override
+    public String frame(String script, String marker) {
+        return "( eval " + quote(script) + " ) </dev/null\n"
+                + "printf '%s:%d\\n' " + quote(marker) + " $?\n"
+                + "printf '%s\\n' " + quote(marker) + " 1>&2\n";
+    }
+
+    static String quote(String text) {
+        return "'" + text.replace("'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.RawStreams;
+import org.apache.commons.io.FileUtils;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resident spawn helper, a small shell started once which starts the commands on behalf of the JVM.
+ * Starting a process from a JVM with a large heap gets slower as the heap grows when the JDK forks
+ * ({@code -Djdk.lang.Process.launchMechanism=FORK}), the helper forks a few megabytes instead.
+ * Commands get no standard input, their output and error output go through files in a scratch directory,
+ * in memory if there is /dev/shm, and are read once the command exited. The commands inherit environment
+ * and work directory of the template from the helper, yet they have no environment, work directory,
+ * configuring hooks, listeners or standard input of their own, listeners of the template see the helper only.
+ * Each command is waited for and killed by its own subshell which the helper knows by {@code $!},
+ * so no process id is ever signalled after the command exited
+ */
+public final class Spawner implements AutoCloseable {
+    private final File dir;
+    private final RawStreams streams = new RawStreams();
+    private final StartedProcess process;
+    private final OutputStream input;
+    private final Map<Long, Spawned> running = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param cmd template without an interpreter to start the helper
+     */
+    public Spawner(ICmd cmd) throws IOException {
+        this(cmd, new File("/dev/shm").canWrite() ? new File("/dev/shm") : new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param cmd     template without an interpreter to start the helper
+     * @param scratch parent of the scratch directory
+     */
+    public Spawner(ICmd cmd, File scratch) throws IOException {
+        this.dir = Files.createTempDirectory(scratch.toPath(), "spawner").toFile();
+        this.process = cmd
+                .listening((Listening.BeforeStart) executor -> executor.redirectErrorStream(true).streams(streams))
+                .command("sh")
+                .start();
+        this.input = streams.input();
+        Thread reader = new Thread(this::readEvents, "Spawner-" + process.getProcess());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @param command
+     * @return command started by the helper
+     */
+    public Command command(String... command) {
+        return new SubmittedCommand(this::submit, new ArrayList<>(Arrays.asList(command)));
+    }
+
+    /**
+     * Start the command by the helper
+     *
+     * @param command
+     * @return exit code, output and error output of the command, cancelling it kills the command
+     */
+    public CompletableFuture<ScriptResult> submit(String... command) {
+        return submit(Arrays.asList(command));
+    }
+
+    /**
+     * @return number of commands running now
+     */
+    public int running() {
+        return running.size();
+    }
+
+    /**
+     * @return true if the helper is ready to start commands
+     */
+    public boolean alive() {
+        return !closed && process.getProcess().isAlive();
+    }
+
+    /**
+     * Kill the commands still running and stop the helper
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        for (Spawned spawned : running.values()) {
+            spawned.result.cancel(false);
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!running.isEmpty() && System.nanoTime() < deadline && process.getProcess().isAlive()) {
+            Thread.sleep(10);
+        }
+        try {
+            input.close();
+            process.getFuture().get(1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            process.getFuture().cancel(true);
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    CompletableFuture<ScriptResult> submit(List<String> line) {
+        if (!alive()) {
+            throw new IllegalStateException("Spawner " + process.getProcess() + " is not alive");
+        }
+        final Spawned spawned = new Spawned(ids.incrementAndGet(), line);
+        running.put(spawned.id, spawned);
+        spawned.result.whenComplete((result, e) -> {
+            if (spawned.result.isCancelled()) {
+                spawned.kill();
+            }
+        });
+        StringBuilder request = new StringBuilder("( trap 'k=1; [ -z \"$c\" ] || kill $c 2>/dev/null' TERM; ");
+        for (String arg : line) {
+            request.append(Shell.quote(arg)).append(' ');
+        }
+        request.append("</dev/null >").append(Shell.quote(spawned.output().getPath()))
+                .append(" 2>").append(Shell.quote(spawned.error().getPath()))
+                .append(" & c=$!; [ -z \"$k\" ] || kill $c 2>/dev/null; wait $c 2>/dev/null; e=$?;")
+                .append(" while [ $e -gt 128 ] && kill -0 $c 2>/dev/null; do wait $c 2>/dev/null; e=$?; done;")
+                .append(" trap '' TERM; echo \"x ").append(spawned.id).append(" $e\"; exec sleep 3600 ) & ")
+                .append(spawned.job()).append("=$!\n");
+        try {
+            send(request.toString());
+        } catch (IOException e) {
+            running.remove(spawned.id);
+            spawned.result.completeExceptionally(e);
+        }
+        return spawned.result;
+    }
+
+    private void send(String request) throws IOException {
+        synchronized (input) {
+            input.write(request.getBytes(StandardCharsets.UTF_8));
+            input.flush();
+        }
+    }
+
+    /**
+     * Events of the helper are lines "x id exitCode" once a command exited, the subshell of the command
+     * then sleeps ignoring kills of the command until the helper releases it and forgets its {@code $!}
+     */
+    private void readEvents() {
+        try (BufferedReader events = new BufferedReader(new InputStreamReader(streams.output(), StandardCharsets.UTF_8))) {
+            String event;
+            while ((event = events.readLine()) != null) {
+                String[] fields = event.split(" ");
+                Spawned spawned = fields.length == 3 && "x".equals(fields[0])
+                        ? running.remove(Long.parseLong(fields[1]))
+                        : null;
+                if (spawned != null) {
+                    spawned.release();
+                    spawned.exited(Integer.parseInt(fields[2]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the helper is gone, the rest fails below
+        }
+        closed = true;
+        for (Spawned spawned : running.values()) {
+            running.remove(spawned.id);
+            spawned.result.completeExceptionally(new IOException(
+                    "Spawner " + process.getProcess() + " stopped before " + spawned.line + " exited"));
+        }
+    }
+
+    private final class Spawned {
+        private final long id;
+        private final List<String> line;
+        private final CompletableFuture<ScriptResult> result = new CompletableFuture<>();
+
+        private Spawned(long id, List<String> line) {
+            this.id = id;
+            this.line = line;
+        }
+
+        private File output() {
+            return new File(dir, id + ".out");
+        }
+
+        private File error() {
+            return new File(dir, id + ".err");
+        }
+
+        /**
+         * @return shell variable of the helper keeping {@code $!} of the subshell
+         */
+        private String job() {
+            return "w" + id;
+        }
+
+        private void exited(int exitCode) {
+            try {
+                result.complete(new ScriptResult(exitCode,
+                        Files.readAllBytes(output().toPath()), Files.readAllBytes(error().toPath())));
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+            } finally {
+                FileUtils.deleteQuietly(output());
+                FileUtils.deleteQuietly(error());
+            }
+        }
+
+        /**
+         * The subshell kills the command unless it already waited for it, once released the variable
+         * is unset and a late kill signals nothing
+         */
+        private void kill() {
+            if (!running.containsKey(id)) {
+                return;
+            }
+            try {
+                send("kill $" + job() + " 2>/dev/null\n");
+            } catch (IOException e) {
+                // the helper is gone, so are its commands
+            }
+        }
+
+        /**
+         * Stop the sleeping subshell and forget it
+         */
+        private void release() {
+            try {
+                send("kill -9 $" + job() + " 2>/dev/null; wait $" + job() + " 2>/dev/null; unset " + job() + "\n");
+            } catch (IOException e) {
+                // the helper is gone, its subshells sleep out
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.alekseysotnikov.cmd.session;
+
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.Flow;
+import io.github.alekseysotnikov.cmd.core.FuturePublisher;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Command run by a {@link Batcher} or a {@link Spawner}, it has no process of its own
+ */
+final class SubmittedCommand implements Command {
+    private final Function<List<String>, CompletableFuture<ScriptResult>> submit;
+    private final List<String> line;
+
+    SubmittedCommand(Function<List<String>, CompletableFuture<ScriptResult>> submit, List<String> line) {
+        this.submit = submit;
+        this.line = line;
+    }
+
+    @Override
+    public ScriptResult execute() throws IOException, InterruptedException {
+        try {
+            return submit.apply(line).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Command " + line + " failed", e.getCause());
+        }
+    }
+
+    @Override
+    public ScriptResult executeNoTimeout() throws IOException, InterruptedException {
+        return execute();
+    }
+
+    /**
+     * There is no process of its own to start, use {@link #async()}
+     */
+    @Override
+    public StartedProcess start() {
+        throw new UnsupportedOperationException("Command " + commandLine() + " has no process of its own, use async()");
+    }
+
+    /**
+     * @return result of the command, cancelling it cancels the submitted command
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<ProcessResult> async() {
+        return (CompletableFuture<ProcessResult>) (CompletableFuture<?>) submit.apply(line);
+    }
+
+    /**
+     * The whole output is one chunk
+     */
+    @Override
+    public Flow.Publisher<byte[]> chunks() {
+        return new FuturePublisher(this::async);
+    }
+
+    @Override
+    public Stream<String> lines() throws IOException {
+        return lines(false);
+    }
+
+    @Override
+    public Stream<String> lines(boolean fromErrorStream) throws IOException {
+        try {
+            ScriptResult result = execute();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(
+                    fromErrorStream ? result.error() : result.output()), StandardCharsets.UTF_8)).lines();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + line, e);
+        }
+    }
+
+    @Override
+    public List<String> commandLine() {
+        return new ArrayList<>(line);
+    }
+}
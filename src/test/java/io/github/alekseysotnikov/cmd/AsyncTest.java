@@ -0,0 +1,160 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.Flow;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import org.junit.Test;
+import org.zeroturnaround.exec.InvalidExitValueException;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class AsyncTest {
+    @Test
+    public void completesFromExit() throws Exception {
+        final AtomicInteger stopped = new AtomicInteger();
+        final ICmd cmd = new Cmd()
+                .configuring(e -> e.readOutput(true))
+                .listening((Listening.AfterStop) process -> stopped.incrementAndGet())
+                .compiled();
+        final List<CompletableFuture<String>> outputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            outputs.add(cmd.command("sh", "-c", "sleep 0.5; echo " + i).async().thenApply(ProcessResult::outputUTF8));
+        }
+        final long waiting = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("WaitForProcess"))
+                .count();
+        for (int i = 0; i < outputs.size(); i++) {
+            assertThat(outputs.get(i).get(), is(i + "\n"));
+        }
+        assertThat(true, allOf(
+                is(waiting == 0),
+                is(stopped.get() == 100)
+        ));
+    }
+
+    @Test
+    public void startsOneCommandConcurrently() throws Exception {
+        final Command command = new Cmd().command("true");
+        final ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<ProcessResult>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(threads.submit(() -> command.async().get()));
+            }
+            for (Future<ProcessResult> result : results) {
+                assertThat(result.get().getExitValue(), is(0));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelDestroysProcess() throws Exception {
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final CompletableFuture<ProcessResult> result = new Cmd()
+                .listening((Listening.AfterStop) process -> stopped.countDown())
+                .command("sleep", "10")
+                .async();
+        result.cancel(true);
+        assertThat(stopped.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void publishesOnDemand() throws Exception {
+        final File marker = new File("./target/" + UUID.randomUUID());
+        final Chunks chunks = new Chunks();
+        new Cmd()
+                .command("sh", "-c", "head -c 3000000 /dev/zero; touch " + marker)
+                .chunks()
+                .subscribe(chunks);
+        chunks.subscription.get().request(1);
+        Thread.sleep(500);
+        final boolean blocked = !marker.exists() && chunks.bytes.get() <= 8192;
+        chunks.subscription.get().request(Long.MAX_VALUE);
+        assertThat(chunks.done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(true, allOf(
+                is(blocked),
+                is(marker.exists()),
+                is(chunks.bytes.get() == 3000000),
+                is(chunks.error.get() == null)
+        ));
+    }
+
+    @Test
+    public void publishesInvalidExitValue() throws Exception {
+        final Chunks chunks = new Chunks();
+        new Cmd()
+                .configuring(e -> e.exitValueNormal())
+                .command("sh", "-c", "echo oops; exit 3")
+                .chunks()
+                .subscribe(chunks);
+        chunks.subscription.get().request(10);
+        assertThat(chunks.done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(chunks.error.get() instanceof InvalidExitValueException, is(true));
+    }
+
+    @Test
+    public void chunksKeepReadOutputOfCommand() throws Exception {
+        final Command command = new Cmd()
+                .configuring(e -> e.readOutput(true))
+                .command("echo", "Hello");
+        final String before = command.execute().outputUTF8();
+        final Chunks chunks = new Chunks();
+        command.chunks().subscribe(chunks);
+        chunks.subscription.get().request(Long.MAX_VALUE);
+        assertThat(chunks.done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(true, allOf(
+                is("Hello\n".equals(before)),
+                is(chunks.bytes.get() == 6),
+                is("Hello\n".equals(command.execute().outputUTF8()))
+        ));
+    }
+
+    private static final class Chunks implements Flow.Subscriber<byte[]> {
+        private final AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription.set(subscription);
+        }
+
+        @Override
+        public void onNext(byte[] item) {
+            bytes.addAndGet(item.length);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Batch;
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import org.junit.Test;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BatchTest {
+    @Test
+    public void boundedParallelism() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final ICmd template = new Cmd()
+                .listening((Listening.AfterStart) (process, executor) ->
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max))
+                .listening((Listening.AfterStop) process -> running.decrementAndGet())
+                .interpreter("sleep");
+        final List<Iterable<String>> arguments = new ArrayList<>(
+                Collections.nCopies(8, Collections.singletonList("0.1")));
+        int finished = 0;
+        try (Batch batch = new Batch(2, 1)) {
+            for (Future<ProcessResult> result : batch.results(template, arguments)) {
+                assertThat(result.get().getExitValue(), is(0));
+                finished++;
+            }
+        }
+        assertThat(finished, is(8));
+        assertTrue("Parallelism has to be bounded, but was " + peak.get(), peak.get() <= 2);
+    }
+
+    @Test
+    public void submit() throws Exception {
+        try (Batch batch = new Batch(1, 0)) {
+            assertThat(
+                    batch.submit(new Cmd()
+                            .configuring(e -> e.readOutput(true))
+                            .command(Arrays.asList("echo", "Hello")))
+                            .get()
+                            .outputUTF8(),
+                    is("Hello\n"));
+        }
+    }
+}
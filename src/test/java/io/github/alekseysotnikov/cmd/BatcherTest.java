@@ -0,0 +1,58 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.session.Batcher;
+import io.github.alekseysotnikov.cmd.session.ScriptResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class BatcherTest {
+    @Test
+    public void demultiplexesGroups() throws Exception {
+        try (Batcher batcher = new Batcher(new Cmd(), "sh", 10, 1, TimeUnit.MINUTES)) {
+            List<CompletableFuture<ScriptResult>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(batcher.submit("-c", "echo \"out $0\"; echo \"err $0\" 1>&2; exit $(($0 % 5))", "" + i));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                ScriptResult result = results.get(i).get(10, TimeUnit.SECONDS);
+                assertThat(true, allOf(
+                        is(("out " + i + "\n").equals(result.outputUTF8())),
+                        is(("err " + i + "\n").equals(result.errorUTF8())),
+                        is(i % 5 == result.getExitValue())
+                ));
+            }
+            assertThat(batcher.batches(), is(10L));
+        }
+    }
+
+    @Test
+    public void startsLingeringGroup() throws Exception {
+        try (Batcher batcher = new Batcher(new Cmd(), "", 100, 20, TimeUnit.MILLISECONDS)) {
+            final ScriptResult quoted = (ScriptResult) batcher.command("printf", "%s|", "it's", "a b").execute();
+            final ScriptResult missing = (ScriptResult) batcher.command("/no/such/command").execute();
+            assertThat(true, allOf(
+                    is("it's|a b|".equals(quoted.outputUTF8())),
+                    is(127 == missing.getExitValue()),
+                    is(2L == batcher.batches())
+            ));
+        }
+    }
+
+    @Test
+    public void closeStartsCollectedGroup() throws Exception {
+        final CompletableFuture<ScriptResult> result;
+        try (Batcher batcher = new Batcher(new Cmd(), "echo", 100, 1, TimeUnit.HOURS)) {
+            result = batcher.submit("Hello");
+        }
+        assertThat(result.get(10, TimeUnit.SECONDS).outputUTF8(), is("Hello\n"));
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.cache.Cached;
+import io.github.alekseysotnikov.cmd.cache.CachedResult;
+import io.github.alekseysotnikov.cmd.cache.ResultCache;
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class CacheTest {
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File("./target/cache-" + UUID.randomUUID());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void servesHitsWithoutForking() throws Exception {
+        final File input = file("input", "Hello");
+        final File runs = new File(dir, "runs");
+        final ResultCache cache = new ResultCache(new File(dir, "store"), 1024 * 1024);
+        final Cached command = cache
+                .command(new Cmd().configuring(e -> e.redirectErrorStream(false)),
+                        "sh", "-c", "echo run >> " + runs.getPath() + "; cat " + input.getPath() + "; echo oops 1>&2; exit 3")
+                .inputs(input);
+        final CachedResult first = command.execute();
+        final CachedResult second = command.execute();
+        Files.write(input.toPath(), "Bye".getBytes(StandardCharsets.UTF_8));
+        final CachedResult changed = command.execute();
+        final CachedResult restarted = new ResultCache(new File(dir, "store"), 1024 * 1024)
+                .command(new Cmd().configuring(e -> e.redirectErrorStream(false)), command.commandLine().toArray(new String[0]))
+                .inputs(input)
+                .execute();
+        assertThat(true, allOf(
+                is(!first.hit()),
+                is(second.hit()),
+                is(!changed.hit()),
+                is(restarted.hit()),
+                is("Hello".equals(second.outputUTF8())),
+                is("oops\n".equals(second.errorUTF8())),
+                is(3 == second.getExitValue()),
+                is("Bye".equals(restarted.outputUTF8())),
+                is(2 == Files.readAllLines(runs.toPath()).size()),
+                is(1 == cache.hits()),
+                is(1 == cache.memoryHits()),
+                is(2 == cache.misses())
+        ));
+    }
+
+    @Test
+    public void restoresOutputFiles() throws Exception {
+        final File output = new File(dir, "output.txt");
+        final Cached command = new ResultCache(new File(dir, "store"), 1024 * 1024)
+                .command(new Cmd(), "sh", "-c", "echo Hello > " + output.getPath())
+                .outputs(output);
+        command.execute();
+        Files.delete(output.toPath());
+        final CachedResult result = command.execute();
+        assertThat(true, allOf(
+                is(result.hit()),
+                is("Hello\n".equals(new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8)))
+        ));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        final ResultCache cache = new ResultCache(new File(dir, "store"), 100, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            cache.command(new Cmd(), "sh", "-c", "head -c 40 /dev/zero; echo " + i).execute();
+        }
+        final CachedResult last = cache.command(new Cmd(), "sh", "-c", "head -c 40 /dev/zero; echo 4").execute();
+        final CachedResult first = cache.command(new Cmd(), "sh", "-c", "head -c 40 /dev/zero; echo 0").execute();
+        assertThat(true, allOf(
+                is(last.hit()),
+                is(!first.hit()),
+                is(cache.diskBytes() <= 100),
+                is(cache.evictions() >= 3),
+                is(0 == cache.memoryHits())
+        ));
+    }
+
+    @Test
+    public void keysWithoutConfiguring() throws Exception {
+        final AtomicInteger configured = new AtomicInteger();
+        final File first = new File(dir, "first");
+        final File second = new File(dir, "second");
+        Files.createDirectories(first.toPath());
+        Files.createDirectories(second.toPath());
+        Files.write(new File(first, "input").toPath(), "Hello".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(second, "input").toPath(), "Bye".getBytes(StandardCharsets.UTF_8));
+        final char[] argument = new char[70 * 1024];
+        Arrays.fill(argument, 'a');
+        final ResultCache cache = new ResultCache(new File(dir, "store"), 1024 * 1024);
+        final ICmd cmd = new Cmd().configuring(e -> configured.incrementAndGet());
+        final Cached command = cache.command(cmd, "sh", "-c", "cat input", new String(argument))
+                .inputs(new File("input"));
+        final CachedResult miss = command.directory(first).execute();
+        final CachedResult hit = command.directory(first).execute();
+        final CachedResult other = command.directory(second).execute();
+        assertThat(true, allOf(
+                is(!miss.hit()),
+                is(hit.hit()),
+                is(!other.hit()),
+                is("Hello".equals(hit.outputUTF8())),
+                is("Bye".equals(other.outputUTF8())),
+                is(2 == configured.get())
+        ));
+    }
+
+    @Test
+    public void keepsDirectoryOfTemplate() throws Exception {
+        final File work = new File(dir, "work");
+        Files.createDirectories(work.toPath());
+        final ResultCache cache = new ResultCache(new File(dir, "store"), 1024 * 1024);
+        final ICmd cmd = new Cmd().configuring(e -> e.directory(work));
+        final CachedResult result = cache.command(cmd, "pwd").execute();
+        assertThat(result.outputUTF8().trim(), is(work.getCanonicalPath()));
+    }
+
+    private File file(String name, String content) throws Exception {
+        File file = new File(dir, name);
+        Files.createDirectories(dir.toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
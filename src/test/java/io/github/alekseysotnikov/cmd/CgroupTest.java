@@ -0,0 +1,108 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.listeners.Cgroup;
+import org.junit.Assume;
+import org.junit.Test;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CgroupTest {
+    @Test
+    public void accountsProcessInItsOwnCgroup() throws Exception {
+        final Cgroup cgroup = new Cgroup();
+        Assume.assumeTrue(cgroup.available());
+        final AtomicReference<Cgroup.Usage> usage = new AtomicReference<>();
+        final ProcessResult result = new Cmd()
+                .configuring(e -> e.readOutput(true), cgroup)
+                .listening((Listening.AfterStop) process -> usage.set(cgroup.usage(process)))
+                .command("sh", "-c", "grep '^0::' /proc/self/cgroup; i=0; while [ $i -lt 20000 ]; do i=$((i+1)); done; exit 3")
+                .execute();
+        assertThat(true, allOf(
+                is(result.outputUTF8().contains("/cmd-")),
+                is(3 == result.getExitValue()),
+                is(usage.get().getCpuNanos() > 0)
+        ));
+    }
+
+    @Test
+    public void enforcesLimits() throws Exception {
+        final Cgroup cgroup = new Cgroup().pids(16).memory(64 * 1024 * 1024);
+        final Cgroup single = new Cgroup().pids(1);
+        Assume.assumeTrue(cgroup.available());
+        final ProcessResult limits;
+        final ProcessResult forked;
+        try {
+            limits = new Cmd()
+                    .configuring(e -> e.readOutput(true), cgroup)
+                    .command("sh", "-c", "d=$(sed -n 's/^0:://p' /proc/self/cgroup);"
+                            + " cat /sys/fs/cgroup$d/memory.max /sys/fs/cgroup$d/pids.max 2>/dev/null"
+                            + " || cat /sys/fs/cgroup/unified$d/memory.max /sys/fs/cgroup/unified$d/pids.max")
+                    .execute();
+            forked = new Cmd()
+                    .configuring(e -> e.readOutput(true), single)
+                    .command("sh", "-c", "(true) && echo forked")
+                    .execute();
+        } catch (IllegalStateException e) {
+            Assume.assumeTrue("Controllers are not delegated: " + e.getMessage(), false);
+            return;
+        }
+        assertThat(true, allOf(
+                is((64 * 1024 * 1024 + "\n16\n").equals(limits.outputUTF8())),
+                is(!forked.outputUTF8().contains("forked"))
+        ));
+    }
+
+    @Test
+    public void failsWhenLimitCanNotBeApplied() throws Exception {
+        final Cgroup cgroup = new Cgroup().pids(16);
+        Assume.assumeTrue(cgroup.available() && !delegated("pids"));
+        try {
+            new Cmd().configuring(cgroup).command("true").execute();
+            fail("Limit can not be applied");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().contains("pids"), is(true));
+        }
+    }
+
+    @Test
+    public void doesNothingWithoutCgroups() throws Exception {
+        final Cgroup cgroup = new Cgroup(null).memory(1024);
+        final AtomicReference<Cgroup.Usage> usage = new AtomicReference<>();
+        final ProcessResult result = new Cmd()
+                .configuring(e -> e.readOutput(true), cgroup)
+                .listening((Listening.AfterStop) process -> usage.set(cgroup.usage(process)))
+                .command("echo", "Hello")
+                .execute();
+        assertThat(true, allOf(
+                is(!cgroup.available()),
+                is("Hello\n".equals(result.outputUTF8())),
+                is(usage.get() == null)
+        ));
+    }
+
+    private static boolean delegated(String controller) throws Exception {
+        for (String line : Files.readAllLines(Paths.get("/proc/self/cgroup"))) {
+            if (line.startsWith("0::")) {
+                for (String mount : new String[]{"/sys/fs/cgroup", "/sys/fs/cgroup/unified"}) {
+                    Path controllers = Paths.get(mount + line.substring(3), "cgroup.controllers");
+                    if (Files.exists(controllers)) {
+                        return new String(Files.readAllBytes(controllers), StandardCharsets.US_ASCII).contains(controller);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
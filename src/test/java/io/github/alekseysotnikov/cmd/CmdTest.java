@@ -1,23 +1,34 @@
 package io.github.alekseysotnikov.cmd;
 
 import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
 import io.github.alekseysotnikov.cmd.core.Listening;
 import io.github.alekseysotnikov.cmd.listeners.CleanUp;
+import io.github.alekseysotnikov.cmd.listeners.Metrics;
+import io.github.alekseysotnikov.cmd.listeners.NativeRedirectToFile;
 import io.github.alekseysotnikov.cmd.listeners.RedirectTo;
+import io.github.alekseysotnikov.cmd.listeners.Reaper;
 import io.github.alekseysotnikov.cmd.listeners.RedirectToFile;
 import io.github.alekseysotnikov.cmd.listeners.WorkDir;
 import org.junit.Test;
 import org.zeroturnaround.exec.stream.LogOutputStream;
 
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.core.AllOf.allOf;
 import static org.hamcrest.core.Is.is;
@@ -36,6 +47,30 @@ public class CmdTest {
                 is(Arrays.asList("sh", "-c", "echo Hello;")));
     }
 
+    @Test
+    public void compiledCommandLine() {
+        assertThat(
+                new Cmd()
+                        .interpreter("sh")
+                        .compiled()
+                        .command("-c", "echo Hello;")
+                        .commandLine(),
+                is(Arrays.asList("sh", "-c", "echo Hello;")));
+    }
+
+    @Test
+    public void compiledListening() throws Exception {
+        final ArrayList<String> events = new ArrayList<>();
+        final ICmd template = new Cmd()
+                .configuring(e -> e.readOutput(true))
+                .listening((Listening.AfterStart) (p, e) -> events.add("start"))
+                .compiled()
+                .listening((Listening.AfterStop) p -> events.add("stop"));
+        assertThat(template.command("echo", "Hello").execute().outputUTF8(), is("Hello\n"));
+        assertThat(template.command("echo", "Hello").execute().outputUTF8(), is("Hello\n"));
+        assertThat(events, is(Arrays.asList("start", "stop", "start", "stop")));
+    }
+
     @Test
     public void execute() throws Exception {
         assertThat(
@@ -116,6 +151,46 @@ public class CmdTest {
         ));
     }
 
+    @Test
+    public void cleanUpInBackground() throws Exception {
+        final File workDir = generateRandomPath().toFile();
+        final Reaper reaper = new Reaper();
+        assertThat(
+                new Cmd()
+                        .configuring(
+                                new WorkDir(workDir),
+                                RedirectToFile.fromOutputStream("./test.output"),
+                                new CleanUp(reaper)
+                        )
+                        .command("echo", "hello world")
+                        .execute()
+                        .getExitValue(),
+                is(0));
+        reaper.close();
+        assertThat(true, allOf(
+                is(not(workDir.exists())),
+                is(0 == reaper.pending()),
+                is(12L == reaper.reclaimedBytes())
+        ));
+    }
+
+    @Test
+    public void reaperSurvivesFailuresAndClose() throws Exception {
+        final Reaper reaper = new Reaper(16, 4, 2);
+        reaper.reap(null);
+        final File before = Files.createDirectories(generateRandomPath()).toFile();
+        reaper.reap(before);
+        reaper.close();
+        final File after = Files.createDirectories(generateRandomPath()).toFile();
+        reaper.reap(after);
+        assertThat(true, allOf(
+                is(1L == reaper.failed()),
+                is(0 == reaper.pending()),
+                is(!before.exists()),
+                is(!after.exists())
+        ));
+    }
+
     @Test
     public void outputFile() throws Exception {
         final String outputFile = "./test.output";
@@ -136,6 +211,58 @@ public class CmdTest {
         ));
     }
 
+    @Test
+    public void nativeOutputFile() throws Exception {
+        final String outputFile = "./test.output";
+        final Path workDirPath = generateRandomPath();
+        assertThat(true, allOf(
+                is(0 == new Cmd()
+                        .configuring(
+                                new WorkDir(workDirPath.toFile()),
+                                RedirectToFile.fromOutputStream(outputFile).natively()
+                        )
+                        .command("echo", "hello world")
+                        .execute()
+                        .getExitValue()),
+                is("hello world\n".equals(new String(Files.readAllBytes(workDirPath.resolve(outputFile)))))
+        ));
+    }
+
+    @Test
+    public void nativeBothStreamsFile() throws Exception {
+        final String outputFile = "./test.output";
+        final Path workDirPath = generateRandomPath();
+        assertThat(true, allOf(
+                is(0 == new Cmd()
+                        .configuring(
+                                new WorkDir(workDirPath.toFile()),
+                                NativeRedirectToFile.fromBothStreams(outputFile)
+                        )
+                        .command("sh", "-c", "echo out; echo err 1>&2")
+                        .execute()
+                        .getExitValue()),
+                is("out\nerr\n".equals(new String(Files.readAllBytes(workDirPath.resolve(outputFile)))))
+        ));
+    }
+
+    @Test
+    public void listenersKeepOrderPerHook() throws Exception {
+        final StringBuilder events = new StringBuilder();
+        final ICmd cmd = new Cmd()
+                .listening((Listening.AfterStop) process -> events.append("stop1 "))
+                .listening((Listening.BeforeStart) executor -> events.append("before "))
+                .listening(
+                        (Listening.AfterStart) (process, executor) -> events.append("start1 "),
+                        (Listening.AfterStart) (process, executor) -> events.append("start2 "))
+                .listening((Listening.AfterFinish) (process, result) -> events.append("finish "))
+                .listening((Listening.AfterStop) process -> events.append("stop2 "))
+                .compiled();
+        cmd.command("true").execute();
+        cmd.command("true").execute();
+        assertThat(events.toString(), is(
+                "before start1 start2 finish stop1 stop2 before start1 start2 finish stop1 stop2 "));
+    }
+
     @Test
     public void beforeStartListener() throws IOException, InterruptedException, TimeoutException {
         final ArrayList<String> lines = new ArrayList<>();
@@ -156,6 +283,74 @@ public class CmdTest {
         ));
     }
 
+    @Test
+    public void lines() throws Exception {
+        try (Stream<String> lines = new Cmd()
+                .command("sh", "-c", "seq 1 5000")
+                .lines()) {
+            assertThat(lines.mapToInt(Integer::parseInt).sum(), is(5000 * 5001 / 2));
+        }
+    }
+
+    @Test
+    public void errorLines() throws Exception {
+        try (Stream<String> lines = new Cmd()
+                .command("sh", "-c", "echo out; echo err 1>&2")
+                .lines(true)) {
+            assertThat(lines.collect(Collectors.toList()), is(Collections.singletonList("err")));
+        }
+    }
+
+    @Test
+    public void outputFileIsNotBuffered() throws Exception {
+        final Path workDirPath = generateRandomPath();
+        assertThat(
+                new Cmd()
+                        .configuring(
+                                new WorkDir(workDirPath.toFile()),
+                                RedirectToFile.fromOutputStream("./test.output").withoutCopy()
+                        )
+                        .command("echo", "hello world")
+                        .execute()
+                        .hasOutput(),
+                is(false));
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        final Metrics metrics = new Metrics();
+        final ICmd cmd = new Cmd().configuring(e -> e.redirectErrorStream(false), metrics);
+        cmd.command("sh", "-c", "printf abc; printf de 1>&2; exit 3").execute();
+        cmd.command("sh", "-c", "printf abc").execute();
+        final Metrics.Snapshot snapshot = metrics.snapshots().get("sh");
+        assertThat(true, allOf(
+                is(2L == snapshot.getStarted()),
+                is(2L == snapshot.getStopped()),
+                is(6L == snapshot.getOutputBytes()),
+                is(2L == snapshot.getErrorBytes()),
+                is(1L == snapshot.getExitCodes().get(0)),
+                is(1L == snapshot.getExitCodes().get(3)),
+                is(2L == snapshot.getSpawnLatency().getCount()),
+                is(2L == snapshot.getFirstByteLatency().getCount()),
+                is(snapshot.getRuntime().getMax() >= snapshot.getSpawnLatency().getMax())
+        ));
+        final ObjectName name = metrics.register(UUID.randomUUID().toString());
+        assertTrue(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Snapshots") instanceof TabularData);
+    }
+
+    @Test
+    public void metricsKeepErrorStreamMerged() throws Exception {
+        final Metrics metrics = new Metrics();
+        assertThat(
+                new Cmd()
+                        .configuring(e -> e.readOutput(true), metrics)
+                        .command("sh", "-c", "printf abc; printf de 1>&2")
+                        .execute()
+                        .outputUTF8(),
+                is("abcde"));
+        assertThat(metrics.snapshots().get("sh").getOutputBytes(), is(5L));
+    }
+
     private Path generateRandomPath() {
         return Paths.get("./target/", UUID.randomUUID().toString());
     }
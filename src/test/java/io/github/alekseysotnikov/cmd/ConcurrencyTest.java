@@ -0,0 +1,82 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.listeners.CleanUp;
+import io.github.alekseysotnikov.cmd.listeners.RedirectToFile;
+import io.github.alekseysotnikov.cmd.listeners.WorkDir;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyTest {
+    private static final int COMMANDS = 400;
+    private static final int THREADS = 32;
+
+    @Test
+    public void sharedTemplateHasNoCrossTalk() throws Exception {
+        final Map<Process, File> dirs = new ConcurrentHashMap<>();
+        final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        final Queue<File> used = new ConcurrentLinkedQueue<>();
+        final ICmd template = new Cmd()
+                .configuring(
+                        executor -> new WorkDir(Paths.get("./target/", UUID.randomUUID().toString()).toFile())
+                                .run(executor),
+                        RedirectToFile.fromOutputStream("./test.output"),
+                        new CleanUp())
+                .listening((Listening.AfterStart) (process, executor) -> {
+                    dirs.put(process, executor.getDirectory());
+                    used.add(executor.getDirectory());
+                })
+                .listening((Listening.AfterStop) process -> {
+                    File dir = dirs.remove(process);
+                    try {
+                        String expected = dir.getName() + "\n";
+                        String actual = new String(Files.readAllBytes(new File(dir, "test.output").toPath()));
+                        if (!expected.equals(actual)) {
+                            errors.add(dir + " contains " + actual);
+                        }
+                    } catch (Exception e) {
+                        errors.add(dir + ": " + e);
+                    }
+                })
+                .compiled();
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < COMMANDS; i++) {
+                results.add(threads.submit(() -> template
+                        .command("sh", "-c", "basename \"$PWD\"")
+                        .execute()
+                        .getExitValue()));
+            }
+            for (Future<Integer> result : results) {
+                assertThat(result.get(), is(0));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertThat(used.size(), is(COMMANDS));
+        for (File dir : used) {
+            assertTrue(dir + " has to be deleted", !dir.exists());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Deadlines;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import org.junit.After;
+import org.junit.Test;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DeadlinesTest {
+    private final Deadlines deadlines = new Deadlines(10, 64, 300, TimeUnit.MILLISECONDS);
+
+    @After
+    public void tearDown() {
+        deadlines.close();
+    }
+
+    @Test
+    public void terminatesExpiredProcess() throws Exception {
+        final AtomicInteger stopped = new AtomicInteger();
+        final long started = System.nanoTime();
+        final ProcessResult expired = new Cmd()
+                .configuring(deadlines.after(200, TimeUnit.MILLISECONDS))
+                .listening((Listening.AfterStop) process -> stopped.incrementAndGet())
+                .command("sleep", "10")
+                .execute();
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        final ProcessResult fast = new Cmd()
+                .configuring(deadlines.after(200, TimeUnit.MILLISECONDS))
+                .command("true")
+                .execute();
+        assertThat(true, allOf(
+                is(143 == expired.getExitValue()),
+                is(elapsed >= 200 && elapsed < 2000),
+                is(1 == stopped.get()),
+                is(0 == fast.getExitValue())
+        ));
+    }
+
+    @Test
+    public void killsAfterGracePeriod() throws Exception {
+        final long started = System.nanoTime();
+        final ProcessResult result = new Cmd()
+                .configuring(deadlines.after(100, TimeUnit.MILLISECONDS))
+                .command("sh", "-c", "trap '' TERM; exec sleep 10")
+                .execute();
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertThat(true, allOf(
+                is(137 == result.getExitValue()),
+                is(elapsed >= 400 && elapsed < 3000)
+        ));
+    }
+
+    @Test
+    public void forgetsCancelledDeadlines() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            new Cmd().configuring(deadlines.after(1, TimeUnit.HOURS)).command("true").execute();
+        }
+        final long started = System.nanoTime();
+        while (deadlines.scheduled() > 0 && System.nanoTime() - started < TimeUnit.SECONDS.toNanos(3)) {
+            Thread.sleep(10);
+        }
+        final int forgotten = deadlines.scheduled();
+        Thread.sleep(300);
+        final ProcessResult afterIdle = new Cmd()
+                .configuring(deadlines.after(100, TimeUnit.MILLISECONDS))
+                .command("sleep", "10")
+                .execute();
+        assertThat(true, allOf(
+                is(0 == forgotten),
+                is(143 == afterIdle.getExitValue())
+        ));
+    }
+
+    @Test
+    public void terminatesGroup() throws Exception {
+        final Deadlines.Group group = deadlines.group(300, TimeUnit.MILLISECONDS);
+        final List<CompletableFuture<ProcessResult>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(new Cmd().configuring(group).command("sleep", "10").async());
+        }
+        for (CompletableFuture<ProcessResult> result : results) {
+            assertThat(result.get(3, TimeUnit.SECONDS).getExitValue(), is(143));
+        }
+        try {
+            new Cmd().configuring(group).command("true").execute();
+            fail("Group is expired");
+        } catch (IllegalStateException e) {
+            assertThat(group.expired(), is(true));
+        }
+        final Deadlines.Group cancelled = deadlines.group(1, TimeUnit.HOURS);
+        final CompletableFuture<ProcessResult> result = new Cmd().configuring(cancelled).command("sleep", "10").async();
+        cancelled.cancel();
+        assertThat(result.get(3, TimeUnit.SECONDS).getExitValue(), is(143));
+    }
+}
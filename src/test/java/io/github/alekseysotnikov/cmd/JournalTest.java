@@ -0,0 +1,156 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.listeners.Journal;
+import io.github.alekseysotnikov.cmd.listeners.JournalEntry;
+import io.github.alekseysotnikov.cmd.listeners.JournalReader;
+import io.github.alekseysotnikov.cmd.listeners.WorkDir;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class JournalTest {
+    @Test
+    public void recordsExecutions() throws Exception {
+        final File dir = new File("target/journal-" + System.nanoTime());
+        try (Journal journal = new Journal(dir)) {
+            new Cmd().configuring(journal).command("echo", "Hello").execute();
+            new Cmd().configuring(journal, e -> e.redirectErrorStream(false), new WorkDir("target"))
+                    .listening((Listening.AfterStop) process -> { /*nothing*/ })
+                    .command("sh", "-c", "echo oops 1>&2; exit 3")
+                    .execute();
+        }
+        final List<JournalEntry> entries = new JournalReader(dir).entries();
+        final JournalEntry echo = entries.get(0);
+        final JournalEntry failed = entries.get(1);
+        assertThat(true, allOf(
+                is(2 == entries.size()),
+                is(echo.commandLine().equals(Arrays.asList("echo", "Hello"))),
+                is(6 == echo.outputBytes()),
+                is(0 == echo.exitCode()),
+                is("".equals(echo.workDir())),
+                is(echo.spawnNanos() > 0 && echo.firstByteNanos() >= echo.spawnNanos()),
+                is(echo.runtimeNanos() >= echo.firstByteNanos()),
+                is(Math.abs(System.currentTimeMillis() - echo.startMillis()) < 60_000),
+                is(3 == failed.exitCode()),
+                is(5 == failed.errorBytes()),
+                is(0 == failed.outputBytes()),
+                is("target".equals(failed.workDir())),
+                is(failed.listeners().contains("JournalTest")),
+                is(!failed.truncated())
+        ));
+    }
+
+    @Test
+    public void recordsEveryStartOfOneCommand() throws Exception {
+        final File dir = new File("target/journal-" + System.nanoTime());
+        final File slow = new File(dir.getPath() + "-slow");
+        try (Journal journal = new Journal(dir)) {
+            final Command command = new Cmd()
+                    .configuring(journal, e -> e.timeout(1, TimeUnit.SECONDS))
+                    .command("sh", "-c", "printf abc; test -f " + slow.getPath() + " && exec sleep 5; exit 3");
+            command.execute();
+            command.execute();
+            Files.createFile(slow.toPath());
+            try {
+                command.execute();
+                fail("Command has to time out");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            for (int i = 0; i < 100 && journal.written() < 3; i++) {
+                Thread.sleep(50);
+            }
+        } finally {
+            Files.deleteIfExists(slow.toPath());
+        }
+        final List<JournalEntry> entries = new JournalReader(dir).entries();
+        assertThat(true, allOf(
+                is(3 == entries.size()),
+                is(3 == entries.get(0).outputBytes()),
+                is(3 == entries.get(1).outputBytes()),
+                is(3 == entries.get(1).exitCode()),
+                is(JournalEntry.UNKNOWN_EXIT_CODE == entries.get(2).exitCode())
+        ));
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void rollsSegments() throws Exception {
+        final File dir = new File("target/journal-" + System.nanoTime());
+        try (Journal journal = new Journal(dir, 4, 2, 16)) {
+            for (int i = 0; i < 10; i++) {
+                new Cmd().configuring(journal).command("echo", String.valueOf(i)).execute();
+            }
+            assertThat(journal.dropped(), is(0L));
+        }
+        final List<JournalEntry> entries = new JournalReader(dir).entries();
+        assertThat(true, allOf(
+                is(2 == dir.listFiles().length),
+                is(6 == entries.size()),
+                is(entries.get(0).commandLine().equals(Arrays.asList("echo", "4"))),
+                is(entries.get(5).commandLine().equals(Arrays.asList("echo", "9")))
+        ));
+        try (Journal journal = new Journal(dir, 4, 2, 16)) {
+            new Cmd().configuring(journal).command("echo", "10").execute();
+        }
+        assertThat(new JournalReader(dir).entries().get(2).commandLine().get(1), is("10"));
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void truncatesLongCommandLines() throws Exception {
+        final File dir = new File("target/journal-" + System.nanoTime());
+        final char[] chars = new char[1000];
+        Arrays.fill(chars, 'ы');
+        try (Journal journal = new Journal(dir)) {
+            new Cmd().configuring(journal).command("echo", new String(chars)).execute();
+        }
+        final JournalEntry entry = new JournalReader(dir).entries().get(0);
+        assertThat(true, allOf(
+                is(entry.truncated()),
+                is(entry.commandLine().get(1).length() == (320 - 5) / 2),
+                is(entry.commandLine().get(1).chars().allMatch(c -> c == 'ы'))
+        ));
+    }
+
+    @Test
+    public void summarisesAndReplays() throws Exception {
+        final File dir = new File("target/journal-" + System.nanoTime());
+        try (Journal journal = new Journal(dir)) {
+            for (int i = 0; i < 5; i++) {
+                new Cmd().configuring(journal).command("echo", String.valueOf(i)).execute();
+            }
+            new Cmd().configuring(journal).command("true").execute();
+        }
+        final JournalReader reader = new JournalReader(dir);
+        final JournalReader.Summary summary = reader.summary(1);
+        final AtomicInteger replayed = new AtomicInteger();
+        final long nanos = reader.replay(entry -> new Cmd()
+                .listening((Listening.AfterStop) process -> replayed.incrementAndGet())
+                .interpreter("true")
+                .command(entry.commandLine()), 0);
+        assertThat(true, allOf(
+                is(6 == summary.runtime().getCount()),
+                is(6 == summary.spawnLatency().getCount()),
+                is(summary.executables().keySet().equals(java.util.Collections.singleton("echo"))),
+                is(5 == summary.executables().get("echo").getCount()),
+                is(6 == replayed.get()),
+                is(nanos > 0)
+        ));
+    }
+}
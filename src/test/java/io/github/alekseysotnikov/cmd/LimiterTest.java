@@ -0,0 +1,121 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Limiter;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import org.junit.Test;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class LimiterTest {
+    @Test
+    public void boundsProcessesInFlight() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger most = new AtomicInteger();
+        final ICmd cmd = new Cmd()
+                .listening((Listening.AfterStart) (process, executor) -> most.accumulateAndGet(running.incrementAndGet(), Math::max))
+                .listening((Listening.AfterStop) process -> running.decrementAndGet());
+        final Limiter limiter = new Limiter(2, 1, 2, 100, 1, TimeUnit.MINUTES);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ProcessResult>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(threads.submit(() -> limiter.command(cmd.command("sleep", "0.1")).execute()));
+            }
+            for (Future<ProcessResult> result : results) {
+                assertThat(result.get().getExitValue(), is(0));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(true, allOf(
+                is(2 >= most.get()),
+                is(0 == limiter.inFlight()),
+                is(0 == limiter.queued()),
+                is(0L == limiter.rejections())
+        ));
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFullOrWaitIsOver() throws Exception {
+        final Limiter full = new Limiter(1, 1, 1, 0, 1, TimeUnit.MINUTES);
+        final Limiter slow = new Limiter(1, 1, 1, 1, 50, TimeUnit.MILLISECONDS);
+        final CompletableFuture<ProcessResult> first = full.command(new Cmd().command("sleep", "1")).async();
+        final CompletableFuture<ProcessResult> second = slow.command(new Cmd().command("sleep", "1")).async();
+        for (Limiter limiter : new Limiter[]{full, slow}) {
+            try {
+                limiter.command(new Cmd().command("true")).execute();
+                fail("Command has to be rejected");
+            } catch (RejectedExecutionException e) {
+                assertThat(limiter.rejections(), is(1L));
+            }
+        }
+        first.get();
+        second.get();
+        assertThat(full.command(new Cmd().command("true")).execute().getExitValue(), is(0));
+    }
+
+    @Test
+    public void adaptsLimit() throws Exception {
+        final Limiter growing = new Limiter(1, 1, 8, 100, 1, TimeUnit.MINUTES);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ProcessResult>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(threads.submit(() -> growing.command(new Cmd().command("true")).execute()));
+            }
+            for (Future<ProcessResult> result : results) {
+                result.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        final Limiter shrinking = new Limiter(8, 1, 8, 100, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 50; i++) {
+            try {
+                shrinking.command(new Cmd().command("/no/such/command")).execute();
+            } catch (IOException e) {
+                // can not be started
+            }
+        }
+        assertThat(true, allOf(
+                is(growing.limit() > 1),
+                is(shrinking.limit() < 8)
+        ));
+    }
+
+    @Test
+    public void keepsLimitForMixedRuntimes() throws Exception {
+        final Limiter limiter = new Limiter(8, 1, 8, 100, 1, TimeUnit.MINUTES);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ProcessResult>> results = new ArrayList<>();
+            for (int i = 0; i < 80; i++) {
+                final String duration = i % 2 == 0 ? "0" : "0.2";
+                results.add(threads.submit(() -> limiter.command(new Cmd(), "sleep", duration).execute()));
+            }
+            for (Future<ProcessResult> result : results) {
+                assertThat(result.get().getExitValue(), is(0));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(limiter.limit(), is(8));
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.core.Pipeline;
+import io.github.alekseysotnikov.cmd.core.StageResult;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class PipelineTest {
+    @Test
+    public void pipesStages() throws Exception {
+        final AtomicInteger stopped = new AtomicInteger();
+        final ICmd cmd = new Cmd().listening((Listening.AfterStop) process -> stopped.incrementAndGet());
+        final List<StageResult> results = new Pipeline(
+                cmd.command("printf", "b\\na\\nc\\n"),
+                cmd.command("sort"),
+                cmd.configuring(e -> e.readOutput(true)).command("head", "-n", "2")
+        ).execute();
+        assertThat(true, allOf(
+                is("a\nb\n".equals(results.get(2).outputUTF8())),
+                is(results.size() == 3),
+                is(stopped.get() == 3)
+        ));
+    }
+
+    @Test
+    public void keepsExitCodeAndErrorPerStage() throws Exception {
+        final List<StageResult> results = new Pipeline(
+                new Cmd().command("sh", "-c", "echo out; echo err1 1>&2; exit 3"),
+                new Cmd().configuring(e -> e.readOutput(true)).command("sh", "-c", "cat; echo err2 1>&2")
+        ).execute();
+        assertThat(true, allOf(
+                is(3 == results.get(0).getExitValue()),
+                is("err1\n".equals(results.get(0).errorUTF8())),
+                is(0 == results.get(1).getExitValue()),
+                is("out\n".equals(results.get(1).outputUTF8())),
+                is("err2\n".equals(results.get(1).errorUTF8()))
+        ));
+    }
+
+    @Test
+    public void stopsProducerWhenConsumerExits() throws Exception {
+        final List<StageResult> results = new Pipeline(
+                new Cmd().command("head", "-c", "10M", "/dev/zero"),
+                new Cmd().command("sh", "-c", "head -c 1 > /dev/null"),
+                new Cmd().configuring(e -> e.readOutput(true)).command("wc", "-c")
+        ).execute();
+        assertThat(results.get(2).outputUTF8().trim(), is("0"));
+    }
+
+    @Test
+    public void returnsResultsWhenDownstreamExitsFirst() throws Exception {
+        final List<StageResult> results = new Pipeline(new Cmd().command("yes"), new Cmd().command("true")).execute();
+        final List<StageResult> again = new Pipeline(
+                new Cmd().command("sh", "-c", "sleep 0.5; echo late"),
+                new Cmd().command("sh", "-c", "exit 4")
+        ).execute();
+        assertThat(true, allOf(
+                is(2 == results.size()),
+                is(0 == results.get(1).getExitValue()),
+                is(0 != results.get(0).getExitValue()),
+                is(4 == again.get(1).getExitValue()),
+                is(0 != again.get(0).getExitValue())
+        ));
+    }
+
+    @Test
+    public void boundsErrorOutput() throws Exception {
+        final List<StageResult> results = new Pipeline(
+                new Cmd().command("sh", "-c", "head -c 200000 /dev/zero 1>&2; echo end 1>&2"),
+                new Cmd().command("cat")
+        ).execute();
+        final String error = results.get(0).errorUTF8();
+        assertThat(true, allOf(
+                is(64 * 1024 == error.length()),
+                is(error.endsWith("end\n"))
+        ));
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.listeners.Records;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class RecordsTest {
+    @Test
+    public void decodesLines() throws Exception {
+        final List<String> lines = new ArrayList<>();
+        new Cmd().configuring(Records.lines(Records.utf8(lines::add)))
+                .command("printf", "a\\r\\n\\nb\\nno new line")
+                .execute();
+        assertThat(lines, is(Arrays.asList("a", "", "b", "no new line")));
+    }
+
+    @Test
+    public void pushesRecordsWhileRunning() throws Exception {
+        final long[] first = new long[1];
+        new Cmd().configuring(Records.lines((buffer, offset, length) -> {
+            if (first[0] == 0) {
+                first[0] = System.nanoTime();
+            }
+        })).command("sh", "-c", "echo first; sleep 1; echo second").execute();
+        assertThat(System.nanoTime() - first[0] > 500_000_000L, is(true));
+    }
+
+    @Test
+    public void decodesDelimitedAndJsonRecords() throws Exception {
+        final List<String> nul = new ArrayList<>();
+        final List<String> json = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        new Cmd().configuring(Records.nulDelimited(Records.utf8(nul::add)))
+                .command("printf", "a b\\0\\nc\\0")
+                .execute();
+        new Cmd().configuring(Records.jsonLines(Records.utf8(json::add)))
+                .command("printf", "{\"a\":1}\\n  \\n\\n{\"b\":[2]}\\n")
+                .execute();
+        new Cmd().configuring(e -> e.redirectErrorStream(false), Records.lines(Records.utf8(errors::add)).fromErrorStream())
+                .command("sh", "-c", "echo out; echo err 1>&2")
+                .execute();
+        assertThat(true, allOf(
+                is(nul.equals(Arrays.asList("a b", "\nc"))),
+                is(json.equals(Arrays.asList("{\"a\":1}", "{\"b\":[2]}"))),
+                is(errors.equals(Arrays.asList("err")))
+        ));
+    }
+
+    @Test
+    public void decodesLengthPrefixedFrames() throws Exception {
+        final List<String> frames = new ArrayList<>();
+        new Cmd().configuring(Records.lengthPrefixed(Records.utf8(frames::add)))
+                .command("printf", "\\0\\0\\0\\3abc\\0\\0\\0\\0\\0\\0\\0\\2de\\0\\0\\0\\5cut")
+                .execute();
+        assertThat(frames, is(Arrays.asList("abc", "", "de")));
+    }
+
+    @Test
+    public void growsBufferForLongRecords() throws Exception {
+        final List<Integer> lengths = new ArrayList<>();
+        new Cmd().configuring(Records.lines((buffer, offset, length) -> lengths.add(length)))
+                .command("sh", "-c", "head -c 100000 /dev/zero | tr '\\0' x; echo; echo y")
+                .execute();
+        assertThat(lengths, is(Arrays.asList(100000, 1)));
+    }
+
+    @Test
+    public void dropsRecordsOverLimit() throws Exception {
+        final List<String> lines = new ArrayList<>();
+        final List<String> frames = new ArrayList<>();
+        new Cmd().configuring(Records.lines(Records.utf8(lines::add)).atMost(3))
+                .command("sh", "-c", "echo abc; head -c 100000 /dev/zero | tr '\\0' x; echo; echo de; printf toolong")
+                .execute();
+        new Cmd().configuring(Records.lengthPrefixed(Records.utf8(frames::add)).atMost(3))
+                .command("printf", "\\0\\0\\0\\3abc\\177\\377\\377\\377\\0\\0\\0\\2de")
+                .execute();
+        assertThat(true, allOf(
+                is(lines.equals(Arrays.asList("abc", "de"))),
+                is(frames.equals(Arrays.asList("abc")))
+        ));
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Command;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.listeners.RedirectToFile;
+import io.github.alekseysotnikov.cmd.listeners.Rotation;
+import io.github.alekseysotnikov.cmd.listeners.WorkDir;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class RedirectToFileTest {
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File("./target/redirect-" + UUID.randomUUID());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void truncatesOrAppends() throws Exception {
+        run(RedirectToFile.fromOutputStream("output"), "seq 1 1000");
+        run(RedirectToFile.fromOutputStream("output"), "echo first");
+        final String truncated = read("output");
+        run(RedirectToFile.fromOutputStream("output").appending(), "echo second");
+        assertThat(true, allOf(
+                is("first\n".equals(truncated)),
+                is("first\nsecond\n".equals(read("output")))
+        ));
+    }
+
+    @Test
+    public void rotatesBySize() throws Exception {
+        run(RedirectToFile.fromOutputStream("output").rotating(Rotation.bySize(10000).keeping(2)), "seq 1 10000");
+        final String expected = seq(10000);
+        assertThat(true, allOf(
+                is(3 == FileUtils.listFiles(dir, null, false).size()),
+                is(10000 == new File(dir, "output.3").length()),
+                is(10000 == new File(dir, "output.4").length()),
+                is(expected.endsWith(read("output.3") + read("output.4") + read("output")))
+        ));
+    }
+
+    @Test
+    public void rotatesByTime() throws Exception {
+        run(RedirectToFile.fromOutputStream("output").rotating(Rotation.byTime(100, TimeUnit.MILLISECONDS)),
+                "echo a; sleep 0.3; echo b");
+        assertThat(true, allOf(
+                is("a\n".equals(read("output.1"))),
+                is("b\n".equals(read("output")))
+        ));
+    }
+
+    @Test
+    public void compressesRotatedSegments() throws Exception {
+        run(RedirectToFile.fromOutputStream("output").rotating(Rotation.bySize(10000).keeping(100).gzipped()),
+                "seq 1 10000");
+        final StringBuilder actual = new StringBuilder();
+        for (int i = 1; i <= 4; i++) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(new File(dir, "output." + i + ".gz").toPath()))) {
+                actual.append(IOUtils.toString(in, "UTF-8"));
+            }
+        }
+        actual.append(read("output"));
+        assertThat(true, allOf(
+                is(!new File(dir, "output.1").exists()),
+                is(seq(10000).equals(actual.toString()))
+        ));
+    }
+
+    @Test
+    public void writesThroughMappedRegions() throws Exception {
+        run(RedirectToFile.fromOutputStream("output").mapped(4096), "seq 1 10000");
+        run(RedirectToFile.fromOutputStream("output").mapped(4096).appending(), "echo last");
+        run(RedirectToFile.fromOutputStream("rotated").mapped(4096).rotating(Rotation.bySize(10000)), "seq 1 10000");
+        assertThat(true, allOf(
+                is((seq(10000) + "last\n").equals(read("output"))),
+                is(10000 == new File(dir, "rotated.1").length()),
+                is(seq(10000).endsWith(read("rotated")))
+        ));
+    }
+
+    @Test
+    public void cutsMappedFileBeforeStopListeners() throws Exception {
+        final long[] seen = new long[1];
+        new Cmd()
+                .listening((Listening.AfterStop) process -> seen[0] = new File(dir, "output").length())
+                .configuring(new WorkDir(dir), RedirectToFile.fromOutputStream("output").mapped(1 << 20))
+                .command("echo", "short")
+                .execute();
+        assertThat(seen[0], is(6L));
+    }
+
+    @Test
+    public void copiesOutputUnlessAskedNot() throws Exception {
+        final ProcessResult copied = run(RedirectToFile.fromOutputStream("copied"), "echo hello");
+        final ProcessResult notCopied = run(RedirectToFile.fromOutputStream("not-copied").withoutCopy(), "echo hello");
+        assertThat(true, allOf(
+                is("hello\n".equals(copied.outputUTF8())),
+                is(!notCopied.hasOutput()),
+                is("hello\n".equals(read("copied"))),
+                is("hello\n".equals(read("not-copied")))
+        ));
+    }
+
+    @Test
+    public void opensFileOnEveryStart() throws Exception {
+        run(RedirectToFile.fromOutputStream("output"), "echo kept");
+        final Command command = new Cmd()
+                .configuring(new WorkDir(dir), RedirectToFile.fromOutputStream("output").appending())
+                .command("echo", "again");
+        final String notStarted = read("output");
+        command.execute();
+        command.execute();
+        assertThat(true, allOf(
+                is("kept\n".equals(notStarted)),
+                is("kept\nagain\nagain\n".equals(read("output")))
+        ));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rotationIsNotNative() {
+        RedirectToFile.fromOutputStream("output").rotating(Rotation.bySize(1)).natively();
+    }
+
+    private ProcessResult run(RedirectToFile redirect, String script) throws Exception {
+        return new Cmd().configuring(new WorkDir(dir), redirect).command("sh", "-c", script).execute();
+    }
+
+    private String read(String name) throws Exception {
+        return new String(Files.readAllBytes(new File(dir, name).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String seq(int n) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 1; i <= n; i++) {
+            byte[] line = (i + "\n").getBytes(StandardCharsets.UTF_8);
+            out.write(line, 0, line.length);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
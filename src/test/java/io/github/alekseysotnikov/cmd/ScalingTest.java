@@ -0,0 +1,82 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.core.VirtualThreads;
+import io.github.alekseysotnikov.cmd.listeners.RedirectTo;
+import org.junit.Assume;
+import org.junit.Test;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Supervises many sleeping children at once and checks how many platform threads it took,
+ * virtual threads need no more than their carriers.
+ * JDK's own process reaper threads, one per child in any mode, are not counted.
+ * Run with {@code -Dscaling.children=5000} to see where each mode gives up
+ */
+public class ScalingTest {
+    private static final int CHILDREN = Integer.getInteger("scaling.children", 64);
+    private static final String SECONDS = String.valueOf(0.5 + CHILDREN / 100);
+
+    @Test
+    public void platformThreads() throws Exception {
+        final long threads = supervise(new Cmd());
+        assertThat(CHILDREN + " children on platform threads took " + threads + " threads",
+                threads >= CHILDREN, is(true));
+    }
+
+    @Test
+    public void virtualThreads() throws Exception {
+        final VirtualThreads virtual = new VirtualThreads();
+        Assume.assumeTrue(virtual.supported());
+        final long threads = supervise(new Cmd().threads(virtual));
+        final int carriers = Runtime.getRuntime().availableProcessors();
+        assertThat(CHILDREN + " children on virtual threads took " + threads + " platform threads, "
+                + carriers + " processors", threads < CHILDREN && threads <= carriers + 4, is(true));
+    }
+
+    @Test
+    public void virtualThreadsPumpWholeOutput() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final int exit = new Cmd()
+                .threads(new VirtualThreads())
+                .configuring(new RedirectTo(output))
+                .command("sh", "-c", "head -c 3000000 /dev/zero; sleep 0.1; printf end")
+                .start()
+                .getFuture()
+                .get()
+                .getExitValue();
+        assertThat(exit, is(0));
+        assertThat(output.size(), is(3000003));
+    }
+
+    /**
+     * @return number of platform threads started to supervise the children
+     */
+    private static long supervise(ICmd cmd) throws Exception {
+        final ICmd sleeping = cmd.configuring(new RedirectTo(new ByteArrayOutputStream())).compiled();
+        final long before = liveThreads();
+        final List<StartedProcess> children = new ArrayList<>(CHILDREN);
+        for (int i = 0; i < CHILDREN; i++) {
+            children.add(sleeping.command("sleep", SECONDS).start());
+        }
+        final long threads = liveThreads() - before;
+        for (StartedProcess child : children) {
+            assertThat(child.getFuture().get().getExitValue(), is(0));
+        }
+        return threads;
+    }
+
+    private static long liveThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> !thread.getName().startsWith("process reaper"))
+                .count();
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.session.Python;
+import io.github.alekseysotnikov.cmd.session.ScriptResult;
+import io.github.alekseysotnikov.cmd.session.Session;
+import io.github.alekseysotnikov.cmd.session.SessionPool;
+import io.github.alekseysotnikov.cmd.session.Shell;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SessionTest {
+    @Test
+    public void framesShellScripts() throws Exception {
+        try (Session session = new Session(new Cmd(), new Shell())) {
+            final ScriptResult first = session.run("printf 'no new line'; echo oops 1>&2; exit 3");
+            final ScriptResult broken = session.run("if");
+            final ScriptResult last = session.run("echo \"it's $((1 + 1))\"");
+            assertThat(true, allOf(
+                    is("no new line".equals(first.outputUTF8())),
+                    is("oops\n".equals(first.errorUTF8())),
+                    is(3 == first.getExitValue()),
+                    is(0 != broken.getExitValue()),
+                    is("it's 2\n".equals(last.outputUTF8())),
+                    is(0 == last.getExitValue()),
+                    is(3 == session.runs()),
+                    is(session.ping())
+            ));
+        }
+    }
+
+    @Test
+    public void framesPythonScripts() throws Exception {
+        Assume.assumeTrue(new File("/usr/bin/python3").exists());
+        try (Session session = new Session(new Cmd(), new Python())) {
+            final ScriptResult result = session.run("import sys\nprint('a\\\\b')\nsys.exit(4)");
+            assertThat(true, allOf(
+                    is("a\\b\n".equals(result.outputUTF8())),
+                    is(4 == result.getExitValue()),
+                    is(session.ping())
+            ));
+        }
+    }
+
+    @Test
+    public void pythonScriptsReadNoInput() throws Exception {
+        Assume.assumeTrue(new File("/usr/bin/python3").exists());
+        try (Session session = new Session(new Cmd(), new Python())) {
+            final ScriptResult read = session.run("import sys\nprint(repr(sys.stdin.read()))");
+            final ScriptResult child = session.run("import subprocess\nsubprocess.call(['cat'])");
+            final ScriptResult next = session.run("print('next')");
+            assertThat(true, allOf(
+                    is("''\n".equals(read.outputUTF8())),
+                    is("".equals(child.outputUTF8())),
+                    is(0 == child.getExitValue()),
+                    is("next\n".equals(next.outputUTF8()))
+            ));
+        }
+    }
+
+    @Test
+    public void timedOutScriptBreaksSession() throws Exception {
+        try (Session session = new Session(new Cmd(), new Shell())) {
+            final long started = System.nanoTime();
+            try {
+                session.run("sleep 5", 200, TimeUnit.MILLISECONDS);
+                fail("Script has to time out");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            assertThat(true, allOf(
+                    is(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(3)),
+                    is(!session.alive())
+            ));
+        }
+    }
+
+    @Test
+    public void interruptedScriptBreaksSession() throws Exception {
+        try (Session session = new Session(new Cmd(), new Shell())) {
+            Thread.currentThread().interrupt();
+            try {
+                session.run("sleep 5");
+                fail("Run has to be interrupted");
+            } catch (InterruptedException e) {
+                // expected
+            }
+            assertThat(session.alive(), is(false));
+        }
+    }
+
+    @Test
+    public void poolRecyclesSessions() throws Exception {
+        final Set<String> shells = new HashSet<>();
+        try (SessionPool pool = new SessionPool(new Cmd(), new Shell(), 4, 5)) {
+            ExecutorService threads = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<ScriptResult>> results = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    final int n = i;
+                    results.add(threads.submit(() -> pool.run("echo $$; exit " + (n % 7))));
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    ScriptResult result = results.get(i).get();
+                    assertThat(result.getExitValue(), is(i % 7));
+                    shells.add(result.outputUTF8());
+                }
+            } finally {
+                threads.shutdownNow();
+            }
+            pool.check();
+        }
+        assertThat(shells.size() >= 20, is(true));
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.session.ScriptResult;
+import io.github.alekseysotnikov.cmd.session.Spawner;
+import org.junit.Test;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class SpawnerTest {
+    @Test
+    public void spawnsCommandsConcurrently() throws Exception {
+        try (Spawner spawner = new Spawner(new Cmd())) {
+            final ScriptResult quoted = (ScriptResult) spawner.command("sh", "-c", "echo \"it's $0\"; echo oops 1>&2; exit 3", "me")
+                    .execute();
+            final ScriptResult missing = spawner.submit("no-such-command-here").get();
+            final long started = System.nanoTime();
+            final List<CompletableFuture<ScriptResult>> sleeping = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                sleeping.add(spawner.submit("sh", "-c", "sleep 1; echo " + i));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertThat(sleeping.get(i).get().outputUTF8(), is(i + "\n"));
+            }
+            assertThat(true, allOf(
+                    is("it's me\n".equals(quoted.outputUTF8())),
+                    is("oops\n".equals(quoted.errorUTF8())),
+                    is(3 == quoted.getExitValue()),
+                    is(127 == missing.getExitValue()),
+                    is(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5)),
+                    is(0 == spawner.running()),
+                    is(spawner.alive())
+            ));
+        }
+    }
+
+    @Test
+    public void cancellingKillsCommand() throws Exception {
+        try (Spawner spawner = new Spawner(new Cmd())) {
+            final CompletableFuture<ProcessResult> sleeping = spawner.command("sleep", "30").async();
+            Thread.sleep(200);
+            sleeping.cancel(true);
+            final long started = System.nanoTime();
+            while (spawner.running() > 0 && System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5)) {
+                Thread.sleep(10);
+            }
+            assertThat(spawner.running(), is(0));
+        }
+    }
+
+    @Test
+    public void startsOnlyThroughHelper() throws Exception {
+        try (Spawner spawner = new Spawner(new Cmd())) {
+            boolean failed = false;
+            try {
+                spawner.command("true").start();
+            } catch (UnsupportedOperationException e) {
+                failed = true;
+            }
+            final CompletableFuture<ScriptResult> sleeping = spawner.submit("sleep", "30");
+            Thread.sleep(200);
+            sleeping.cancel(true);
+            final ScriptResult after = spawner.submit("echo", "still here").get(5, TimeUnit.SECONDS);
+            assertThat(true, allOf(
+                    is(failed),
+                    is("still here\n".equals(after.outputUTF8())),
+                    is(spawner.alive())
+            ));
+        }
+    }
+
+    @Test
+    public void failsAfterClose() throws Exception {
+        final Spawner spawner = new Spawner(new Cmd());
+        final CompletableFuture<ScriptResult> sleeping = spawner.submit("sleep", "30");
+        Thread.sleep(200);
+        spawner.close();
+        boolean failed = false;
+        try {
+            spawner.submit("true");
+        } catch (IllegalStateException e) {
+            failed = true;
+        }
+        assertThat(true, allOf(
+                is(failed),
+                is(sleeping.isCancelled()),
+                is(!spawner.alive())
+        ));
+    }
+}
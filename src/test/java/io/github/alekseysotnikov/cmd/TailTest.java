@@ -0,0 +1,69 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.Listening;
+import io.github.alekseysotnikov.cmd.listeners.Tail;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class TailTest {
+    @Test
+    public void keepsLastLinesOfEveryStream() throws Exception {
+        final Tail tail = Tail.lines(3);
+        final AtomicReference<String> output = new AtomicReference<>();
+        final AtomicReference<String> error = new AtomicReference<>();
+        final AtomicReference<Process> started = new AtomicReference<>();
+        new Cmd()
+                .configuring(tail, e -> e.redirectErrorStream(false))
+                .listening((Listening.AfterStop) process -> {
+                    started.set(process);
+                    output.set(tail.outputUTF8(process));
+                    error.set(tail.errorUTF8(process));
+                })
+                .command("sh", "-c", "seq 1 100000; echo oops 1>&2; printf 'no new line' 1>&2")
+                .execute();
+        assertThat(true, allOf(
+                is("99998\n99999\n100000\n".equals(output.get())),
+                is("oops\nno new line".equals(error.get())),
+                is(output.get().equals(tail.outputUTF8(started.get()))),
+                is(0 == tail.output(new ProcessBuilder("true").start()).length)
+        ));
+    }
+
+    @Test
+    public void keepsLastBytesOfMergedStreams() throws Exception {
+        final Tail tail = Tail.bytes(10);
+        final AtomicReference<Process> started = new AtomicReference<>();
+        new Cmd()
+                .configuring(tail)
+                .listening((Listening.AfterStop) started::set)
+                .command("sh", "-c", "seq 1 100000; echo oops 1>&2")
+                .execute();
+        assertThat(true, allOf(
+                is("0000\noops\n".equals(tail.outputUTF8(started.get()))),
+                is("".equals(tail.errorUTF8(started.get())))
+        ));
+    }
+
+    @Test
+    public void cutsLongLines() throws Exception {
+        final Tail tail = new Tail(2, 4);
+        final AtomicReference<Process> started = new AtomicReference<>();
+        new Cmd()
+                .configuring(tail)
+                .listening((Listening.AfterStop) started::set)
+                .command("echo", "long line")
+                .execute();
+        assertThat(tail.outputUTF8(started.get()), is("ine\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesLinesOverflowingBuffer() {
+        Tail.lines(Integer.MAX_VALUE / 1024 + 1);
+    }
+}
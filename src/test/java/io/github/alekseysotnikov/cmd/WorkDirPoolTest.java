@@ -0,0 +1,142 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.core.ICmd;
+import io.github.alekseysotnikov.cmd.listeners.WorkDirPool;
+import org.junit.Test;
+import org.zeroturnaround.exec.StartedProcess;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class WorkDirPoolTest {
+    @Test
+    public void recyclesDirectories() throws Exception {
+        final File root = new File("target/pool-" + UUID.randomUUID()).getAbsoluteFile();
+        final Set<String> dirs = new HashSet<>();
+        try (WorkDirPool pool = new WorkDirPool(root, 2, 1024 * 1024)) {
+            final ICmd cmd = new Cmd().configuring(e -> e.readOutput(true), pool);
+            for (int i = 0; i < 10; i++) {
+                String dir = cmd.command("sh", "-c", "ls -A | wc -l; echo x > f; mkdir -p d/e; pwd")
+                        .execute()
+                        .outputUTF8();
+                assertThat(dir.startsWith("0\n"), is(true));
+                dirs.add(dir);
+            }
+            ExecutorService threads = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> results = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    results.add(threads.submit(() -> cmd.command("sh", "-c", "echo x > f").execute()));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                threads.shutdownNow();
+            }
+            assertThat(true, allOf(
+                    is(1 == dirs.size()),
+                    is(dirs.iterator().next().contains(root.getPath())),
+                    is(2 == pool.idle()),
+                    is(2 == root.list().length)
+            ));
+        }
+        assertThat(root.exists(), is(false));
+    }
+
+    @Test
+    public void rejectsOverQuota() throws Exception {
+        final File root = new File("./target/pool-" + UUID.randomUUID());
+        try (WorkDirPool pool = new WorkDirPool(root, 1, 1000)) {
+            final StartedProcess writer = new Cmd()
+                    .configuring(pool)
+                    .command("sh", "-c", "head -c 5000 /dev/zero > f; sleep 3")
+                    .start();
+            Thread.sleep(1200);
+            try {
+                new Cmd().configuring(pool).command("true").execute();
+                fail("Quota has to be exceeded");
+            } catch (UncheckedIOException e) {
+                assertThat(pool.usedBytes(), is(5000L));
+            }
+            writer.getFuture().get();
+            assertThat(new Cmd().configuring(pool).command("true").execute().getExitValue(), is(0));
+        }
+    }
+
+    @Test
+    public void returnsDirectoriesOfCommandsNotStarted() throws Exception {
+        final File root = new File("target/pool-" + UUID.randomUUID()).getAbsoluteFile();
+        try (WorkDirPool pool = new WorkDirPool(root, 1, 1024 * 1024)) {
+            final ICmd cmd = new Cmd().configuring(pool);
+            cmd.command("true");
+            final int configured = pool.idle();
+            try {
+                cmd.command("no-such-command-" + UUID.randomUUID()).execute();
+                fail("Command has to fail to start");
+            } catch (IOException e) {
+                assertThat(true, allOf(
+                        is(1 == configured),
+                        is(1 == pool.idle()),
+                        is(1 == root.list().length)
+                ));
+            }
+        }
+    }
+
+    @Test
+    public void doesNotFollowLinks() throws Exception {
+        final File root = new File("target/pool-" + UUID.randomUUID()).getAbsoluteFile();
+        final File outside = new File("target/outside-" + UUID.randomUUID()).getAbsoluteFile();
+        final File kept = new File(outside, "kept");
+        Files.createDirectories(outside.toPath());
+        Files.write(kept.toPath(), new byte[5000]);
+        try (WorkDirPool pool = new WorkDirPool(root, 1, 1000)) {
+            final ICmd cmd = new Cmd().configuring(pool);
+            final StartedProcess linking = cmd
+                    .command("sh", "-c", "ln -s " + outside.getPath() + " outside; mkdir -p a/b; ln -s ../.. a/b/c;"
+                            + " head -c 100 /dev/zero > f; sleep 2")
+                    .start();
+            Thread.sleep(1200);
+            assertThat(cmd.command("true").execute().getExitValue(), is(0));
+            linking.getFuture().get();
+            assertThat(true, allOf(
+                    is(100L == pool.usedBytes()),
+                    is(kept.isFile()),
+                    is(1 == pool.idle()),
+                    is(0 == root.listFiles()[0].list().length)
+            ));
+        } finally {
+            Files.delete(kept.toPath());
+            Files.delete(outside.toPath());
+        }
+    }
+
+    @Test
+    public void usesTmpfs() throws Exception {
+        try (WorkDirPool pool = WorkDirPool.inMemory("pool-" + UUID.randomUUID(), 1, 1024)) {
+            final String dir = new Cmd()
+                    .configuring(e -> e.readOutput(true), pool)
+                    .command("pwd")
+                    .execute()
+                    .outputUTF8();
+            assertThat(dir.startsWith(new File("/dev/shm").isDirectory() ? "/dev/shm/" : "/"), is(true));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.alekseysotnikov.cmd;
+
+import io.github.alekseysotnikov.cmd.core.Cmd;
+import io.github.alekseysotnikov.cmd.pool.LengthPrefixed;
+import io.github.alekseysotnikov.cmd.pool.Lines;
+import io.github.alekseysotnikov.cmd.pool.WorkerPool;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class WorkerPoolTest {
+    private static final byte[] PING = "ping".getBytes(StandardCharsets.UTF_8);
+    private static final String WORKER =
+            "while read l; do if [ \"$l\" = die ]; then exit 1; fi; if [ \"$l\" = hang ]; then exec sleep 5; fi; "
+                    + "echo \"$$:$l\"; done";
+
+    @Test
+    public void recyclesWorkers() throws Exception {
+        final Set<String> workers = new HashSet<>();
+        try (WorkerPool pool = new WorkerPool(new Cmd(), Arrays.asList("sh", "-c", WORKER),
+                new Lines(), 1, 2, 1, TimeUnit.MINUTES)) {
+            for (int i = 0; i < 6; i++) {
+                String response = pool.command("hello world".getBytes(StandardCharsets.UTF_8)).execute().outputUTF8();
+                assertThat(response.endsWith(":hello world"), is(true));
+                workers.add(response.split(":")[0]);
+            }
+        }
+        assertThat(workers.size(), is(3));
+    }
+
+    @Test
+    public void replacesCrashedWorkers() throws Exception {
+        try (WorkerPool pool = new WorkerPool(new Cmd(), Arrays.asList("sh", "-c", WORKER),
+                new Lines(), 1, 100, 1, TimeUnit.MINUTES)) {
+            String before = pool.command(PING).execute().outputUTF8();
+            try {
+                pool.command("die".getBytes(StandardCharsets.UTF_8)).execute();
+                fail("Crashed worker has to be reported");
+            } catch (IOException e) {
+                // expected
+            }
+            String after = pool.command(PING).execute().outputUTF8();
+            assertThat(true, allOf(
+                    is(after.endsWith(":ping")),
+                    is(!before.equals(after))
+            ));
+        }
+    }
+
+    @Test
+    public void lengthPrefixedMessages() throws Exception {
+        try (WorkerPool pool = new WorkerPool(new Cmd(), Arrays.asList("cat"),
+                new LengthPrefixed(), 2, 100, 1, TimeUnit.MINUTES)) {
+            assertThat(new String(pool.request("multi\nline\n".getBytes())), is("multi\nline\n"));
+            assertThat(new String(pool.request(new byte[0])), is(""));
+        }
+    }
+
+    @Test
+    public void queuesAsyncRequestsOnSharedThreads() throws Exception {
+        final int before = Thread.activeCount();
+        try (WorkerPool pool = new WorkerPool(new Cmd(), Arrays.asList("sh", "-c", WORKER),
+                new Lines(), 2, 1000, 1, TimeUnit.MINUTES)) {
+            List<CompletableFuture<byte[]>> responses = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                responses.add(pool.async(("request " + i).getBytes()));
+            }
+            final int during = Thread.activeCount();
+            for (int i = 0; i < responses.size(); i++) {
+                assertThat(new String(responses.get(i).get()).endsWith(":request " + i), is(true));
+            }
+            assertThat("threads before " + before + ", during " + during, during - before < 20, is(true));
+        }
+    }
+
+    @Test
+    public void killsWorkersNotAnsweringInTime() throws Exception {
+        try (WorkerPool pool = new WorkerPool(new Cmd(), Arrays.asList("sh", "-c", WORKER),
+                new Lines(), 1, 100, 1, TimeUnit.MINUTES)) {
+            final long started = System.nanoTime();
+            try {
+                pool.request("hang".getBytes(StandardCharsets.UTF_8), 200, TimeUnit.MILLISECONDS);
+                fail("Request has to time out");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            final long elapsed = System.nanoTime() - started;
+            assertThat(true, allOf(
+                    is(elapsed < TimeUnit.SECONDS.toNanos(3)),
+                    is(new String(pool.request(PING, 1, TimeUnit.SECONDS), StandardCharsets.UTF_8).endsWith(":ping"))
+            ));
+        }
+    }
+}